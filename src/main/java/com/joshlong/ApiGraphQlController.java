@@ -1,5 +1,7 @@
 package com.joshlong;
 
+import com.joshlong.dates.DateFormatter;
+import com.joshlong.dates.IsoDateFormat;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.graphql.data.method.annotation.Argument;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
@@ -7,7 +9,6 @@ import org.springframework.graphql.data.method.annotation.SchemaMapping;
 import org.springframework.stereotype.Controller;
 import org.springframework.util.Assert;
 
-import java.text.DateFormat;
 import java.util.Collection;
 
 /**
@@ -22,7 +23,7 @@ class ApiGraphQlController {
 
 	private final PodcastService podcastService;
 
-	private final DateFormat isoDateFormat;
+	private final DateFormatter isoDateFormat;
 
 	private final ContentService<String> abstractsContentService;
 
@@ -39,7 +40,7 @@ class ApiGraphQlController {
 			BlogPostSearchService blogPostSearchService, //
 			AppearanceService appearanceService, //
 			PodcastService podcastService, //
-			DateFormat isoDateFormat) {
+			@IsoDateFormat DateFormatter isoDateFormat) {
 
 		this.blogPostSearchService = blogPostSearchService;
 		this.appearanceService = appearanceService;
@@ -0,0 +1,48 @@
+package com.joshlong.dates;
+
+import com.joshlong.index.IndexingStartedEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Formats {@link Date dates} with an immutable {@link DateTimeFormatter} and remembers
+ * the formatted {@link String} for each instant. The same handful of dates (blog posts,
+ * appearances, podcasts) get formatted over and over again between index rebuilds, so
+ * the cache lives only as long as the current index snapshot: it's swapped for an empty
+ * one whenever a new index build starts.
+ *
+ * @author Josh Long
+ */
+class CachingDateFormatter implements DateFormatter, ApplicationListener<IndexingStartedEvent> {
+
+	private final DateTimeFormatter formatter;
+
+	private final AtomicReference<Map<Long, String>> snapshot = new AtomicReference<>(new ConcurrentHashMap<>());
+
+	CachingDateFormatter(DateTimeFormatter formatter) {
+		this.formatter = formatter;
+	}
+
+	@Override
+	public String format(Date date) {
+		var cache = this.snapshot.get();
+		var time = date.getTime();
+		var formatted = cache.get(time);
+		if (formatted == null) {
+			formatted = this.formatter.format(date.toInstant());
+			cache.putIfAbsent(time, formatted);
+		}
+		return formatted;
+	}
+
+	@Override
+	public void onApplicationEvent(IndexingStartedEvent event) {
+		this.snapshot.set(new ConcurrentHashMap<>());
+	}
+
+}
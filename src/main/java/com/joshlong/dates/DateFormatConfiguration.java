@@ -1,24 +1,32 @@
 package com.joshlong.dates;
 
-import com.joshlong.utils.DateFormatUtils;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.text.DateFormat;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 
 @Configuration
 class DateFormatConfiguration {
 
+	/* Quoted "Z" to indicate UTC, no timezone offset */
+	static final DateTimeFormatter ISO_DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm'Z'")
+			.withZone(ZoneOffset.UTC);
+
+	static final DateTimeFormatter SIMPLE_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd")
+			.withZone(ZoneId.systemDefault());
+
 	@Bean
 	@IsoDateFormat
-	DateFormat isoDateFormat() {
-		return DateFormatUtils.getThreadsafeIsoDateTimeDateFormat();
+	CachingDateFormatter isoDateFormat() {
+		return new CachingDateFormatter(ISO_DATE_TIME);
 	}
 
 	@Bean
 	@SimpleDateDateFormat
-	DateFormat simpleDateDateFormat() {
-		return DateFormatUtils.getThreadSafeSimpleDateDateFormat();
+	CachingDateFormatter simpleDateDateFormat() {
+		return new CachingDateFormatter(SIMPLE_DATE);
 	}
 
 }
@@ -0,0 +1,17 @@
+package com.joshlong.dates;
+
+import java.util.Date;
+
+/**
+ * A thread-safe replacement for the {@link java.text.DateFormat} instances we used to
+ * share across threads. Implementations are backed by immutable
+ * {@link java.time.format.DateTimeFormatter}s, so callers on any number of (virtual)
+ * threads may use the same instance.
+ *
+ * @author Josh Long
+ */
+public interface DateFormatter {
+
+	String format(Date date);
+
+}
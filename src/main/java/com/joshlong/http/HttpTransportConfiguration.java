@@ -0,0 +1,50 @@
+package com.joshlong.http;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+import java.net.http.HttpClient;
+import java.util.List;
+
+/**
+ * Every outbound call - to the YouTube Data API, to the podcast feed - goes through
+ * the one {@link HttpClient} configured here, by way of the {@code RestClient.Builder}
+ * that Spring Boot hands out. The JDK client keeps its connections open between
+ * requests and multiplexes requests to the same host over a single HTTP/2 connection
+ * where the host supports it.
+ * <p>
+ * The {@link HttpTransportInterceptor} sits underneath any interceptors the individual
+ * clients add, so that they only ever see decompressed responses and so that the
+ * metrics only ever count what actually went over the wire.
+ *
+ * @author Josh Long
+ */
+@Configuration
+@EnableConfigurationProperties(HttpTransportProperties.class)
+class HttpTransportConfiguration {
+
+	@Bean
+	HttpClient httpClient(HttpTransportProperties properties) {
+		return HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.connectTimeout(properties.connectTimeout())
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.build();
+	}
+
+	@Bean
+	RestClientCustomizer httpTransportRestClientCustomizer(HttpClient httpClient, HttpTransportProperties properties,
+			MeterRegistry registry) {
+		var jdk = new JdkClientHttpRequestFactory(httpClient);
+		jdk.setReadTimeout(properties.readTimeout());
+		var transport = new InterceptingClientHttpRequestFactory(jdk,
+				List.of(new HttpTransportInterceptor(properties.gzip(), registry)));
+		return builder -> builder.requestFactory(transport);
+	}
+
+}
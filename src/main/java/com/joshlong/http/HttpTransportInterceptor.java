@@ -0,0 +1,207 @@
+package com.joshlong.http;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Asks for gzipped responses and decompresses them as they're read, and records, for
+ * each host:
+ * <ul>
+ * <li>{@code http.outbound.requests} - how long each exchange took, from sending the
+ * request until the response was closed</li>
+ * <li>{@code http.outbound.bytes} - the bytes sent and received, as they went over the
+ * wire, so compressed</li>
+ * <li>{@code http.outbound.active} - how many exchanges are in flight. The JDK client
+ * doesn't expose its connection pool, and with HTTP/2 many exchanges share a
+ * connection anyway, so this is the closest we get to how busy the pool is</li>
+ * </ul>
+ *
+ * @author Josh Long
+ */
+class HttpTransportInterceptor implements ClientHttpRequestInterceptor {
+
+	/**
+	 * Google's APIs only gzip their responses for clients whose user agent says that
+	 * they can take it
+	 */
+	private static final String USER_AGENT = "joshlong-api (gzip)";
+
+	private final Map<String, AtomicInteger> active = new ConcurrentHashMap<>();
+
+	private final boolean gzip;
+
+	private final MeterRegistry registry;
+
+	HttpTransportInterceptor(boolean gzip, MeterRegistry registry) {
+		this.gzip = gzip;
+		this.registry = registry;
+	}
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+		var host = request.getURI().getHost();
+		if (this.gzip) {
+			var headers = request.getHeaders();
+			if (!headers.containsKey(HttpHeaders.ACCEPT_ENCODING))
+				headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+			if (!headers.containsKey(HttpHeaders.USER_AGENT))
+				headers.set(HttpHeaders.USER_AGENT, USER_AGENT);
+		}
+		this.bytes(host, "sent").record(body.length);
+		var inFlight = this.active.computeIfAbsent(host,
+				h -> this.registry.gauge("http.outbound.active", Tags.of("host", h), new AtomicInteger()));
+		inFlight.incrementAndGet();
+		var sample = Timer.start(this.registry);
+		try {
+			return new MeteredResponse(execution.execute(request, body), host, inFlight, sample);
+		} //
+		catch (IOException | RuntimeException e) {
+			inFlight.decrementAndGet();
+			sample.stop(this.timer(host, "IO_ERROR"));
+			throw e;
+		}
+	}
+
+	private DistributionSummary bytes(String host, String direction) {
+		return DistributionSummary.builder("http.outbound.bytes")
+				.baseUnit("bytes")
+				.tags("host", host, "direction", direction)
+				.register(this.registry);
+	}
+
+	private Timer timer(String host, String status) {
+		return Timer.builder("http.outbound.requests").tags("host", host, "status", status).register(this.registry);
+	}
+
+	/**
+	 * responses without a body, like a {@code 304}, may still claim to be gzipped, and
+	 * {@link GZIPInputStream} insists on reading a header
+	 */
+	private static InputStream gunzip(InputStream in) throws IOException {
+		var pushback = new PushbackInputStream(in, 1);
+		var first = pushback.read();
+		if (first == -1)
+			return InputStream.nullInputStream();
+		pushback.unread(first);
+		return new GZIPInputStream(pushback);
+	}
+
+	private class MeteredResponse implements ClientHttpResponse {
+
+		private final ClientHttpResponse response;
+
+		private final String host;
+
+		private final AtomicInteger inFlight;
+
+		private final Timer.Sample sample;
+
+		private final boolean gzipped;
+
+		private long received;
+
+		private boolean closed;
+
+		private InputStream body;
+
+		MeteredResponse(ClientHttpResponse response, String host, AtomicInteger inFlight, Timer.Sample sample) {
+			this.response = response;
+			this.host = host;
+			this.inFlight = inFlight;
+			this.sample = sample;
+			this.gzipped = "gzip".equalsIgnoreCase(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		}
+
+		@Override
+		public HttpStatusCode getStatusCode() throws IOException {
+			return this.response.getStatusCode();
+		}
+
+		@Override
+		public String getStatusText() throws IOException {
+			return this.response.getStatusText();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			if (!this.gzipped)
+				return this.response.getHeaders();
+			// the body we hand back is no longer encoded, nor is it the advertised length
+			var headers = new HttpHeaders();
+			headers.putAll(this.response.getHeaders());
+			headers.remove(HttpHeaders.CONTENT_ENCODING);
+			headers.remove(HttpHeaders.CONTENT_LENGTH);
+			return headers;
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			if (this.body == null) {
+				InputStream counting = new FilterInputStream(this.response.getBody()) {
+
+					@Override
+					public int read() throws IOException {
+						var read = super.read();
+						if (read != -1)
+							received += 1;
+						return read;
+					}
+
+					@Override
+					public int read(byte[] b, int off, int len) throws IOException {
+						var read = super.read(b, off, len);
+						if (read > 0)
+							received += read;
+						return read;
+					}
+				};
+				this.body = this.gzipped ? gunzip(counting) : counting;
+			}
+			return this.body;
+		}
+
+		@Override
+		public void close() {
+			if (this.closed)
+				return;
+			this.closed = true;
+			try {
+				this.response.close();
+			} //
+			finally {
+				this.inFlight.decrementAndGet();
+				bytes(this.host, "received").record(this.received);
+				this.sample.stop(timer(this.host, this.status()));
+			}
+		}
+
+		private String status() {
+			try {
+				return Integer.toString(this.response.getStatusCode().value());
+			} //
+			catch (IOException e) {
+				return "IO_ERROR";
+			}
+		}
+
+	}
+
+}
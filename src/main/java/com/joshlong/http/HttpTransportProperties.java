@@ -0,0 +1,16 @@
+package com.joshlong.http;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param connectTimeout how long to wait for a connection to a host to be established
+ * @param readTimeout how long to wait for a response once the request has been sent
+ * @param gzip whether to ask for, and transparently decompress, gzipped responses
+ */
+@ConfigurationProperties(prefix = "bootiful.http")
+public record HttpTransportProperties(@DefaultValue("5s") Duration connectTimeout,
+		@DefaultValue("30s") Duration readTimeout, @DefaultValue("true") boolean gzip) {
+}
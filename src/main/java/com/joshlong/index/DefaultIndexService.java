@@ -1,6 +1,7 @@
 package com.joshlong.index;
 
 import com.joshlong.*;
+import com.joshlong.dates.DateFormatter;
 import com.joshlong.lucene.DocumentWriteMapper;
 import com.joshlong.lucene.LuceneTemplate;
 import org.apache.lucene.document.*;
@@ -20,7 +21,6 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
-import java.text.DateFormat;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -32,7 +32,7 @@ class DefaultIndexService implements IndexService {
 
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
-	private final DateFormat simpleDateFormat;
+	private final DateFormatter simpleDateFormat;
 
 	private final File root;
 
@@ -54,7 +54,7 @@ class DefaultIndexService implements IndexService {
 			.map(contentType -> contentType.name().toLowerCase(Locale.ROOT))//
 			.collect(Collectors.toSet());
 
-	DefaultIndexService(DateFormat simpleDateFormat, ApplicationEventPublisher publisher,
+	DefaultIndexService(DateFormatter simpleDateFormat, ApplicationEventPublisher publisher,
 			BlogPostService blogPostService, LuceneTemplate luceneTemplate, URI gitRepository, File contentRoot,
 			boolean resetOnRebuild) {
 		this.simpleDateFormat = simpleDateFormat;
@@ -3,6 +3,7 @@ package com.joshlong.index;
 
 import com.joshlong.BlogPostService;
 import com.joshlong.BlogProperties;
+import com.joshlong.dates.DateFormatter;
 import com.joshlong.dates.IsoDateFormat;
 import com.joshlong.dates.SimpleDateDateFormat;
 import com.joshlong.lucene.LuceneTemplate;
@@ -19,7 +20,6 @@ import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
-import java.text.DateFormat;
 import java.util.Set;
 
 @Configuration
@@ -42,7 +42,7 @@ public class IndexConfiguration {
 	}
 
 	@Bean
-	DefaultIndexService indexService(@SimpleDateDateFormat DateFormat simpleDateFormat,
+	DefaultIndexService indexService(@SimpleDateDateFormat DateFormatter simpleDateFormat,
 			ApplicationEventPublisher publisher, BlogProperties properties, BlogPostService blogPostService,
 			LuceneTemplate luceneTemplate) throws Exception {
 		return new DefaultIndexService(simpleDateFormat, publisher, blogPostService, luceneTemplate,
@@ -56,9 +56,9 @@ class Listener {
 
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
-	private final DateFormat dateFormat;
+	private final DateFormatter dateFormat;
 
-	Listener(@IsoDateFormat DateFormat dateFormat) {
+	Listener(@IsoDateFormat DateFormatter dateFormat) {
 		this.dateFormat = dateFormat;
 	}
 
@@ -0,0 +1,81 @@
+package com.joshlong.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+
+/**
+ * Read only transactions - the public video queries that miss the in-memory catalog -
+ * go to the read replicas, so that they don't queue up for connections behind, or
+ * compete for I/O with, the writes of an ingest, which go to the primary. The refreshes
+ * of that catalog go to the primary too, since a replica may not have caught up with
+ * the ingest whose notification triggered them.
+ * <p>
+ * The {@link DataSource} everybody else sees doesn't pick a pool until the first
+ * statement of a transaction, by which time it knows whether the transaction is read
+ * only. The primary is configured with the usual {@code spring.datasource.*}
+ * properties, and is the one Flyway migrates. The replicas are configured with
+ * {@code bootiful.datasource.*} and, should they fall too far behind, the primary
+ * serves their reads too. Each pool is named - {@code primary}, {@code replica-0},
+ * {@code replica-1} and so on - and its metrics are tagged with that name.
+ *
+ * @author Josh Long
+ */
+@Configuration
+@EnableConfigurationProperties(ReplicaProperties.class)
+class DataSourceConfiguration {
+
+	@Bean
+	@FlywayDataSource
+	@ConfigurationProperties(prefix = "spring.datasource.hikari")
+	HikariDataSource primaryDataSource(DataSourceProperties properties, MeterRegistry registry) {
+		var primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		primary.setPoolName("primary");
+		primary.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+		return primary;
+	}
+
+	@Bean
+	ReplicaDataSource replicaDataSource(HikariDataSource primaryDataSource, DataSourceProperties primaryProperties,
+			ReplicaProperties properties, MeterRegistry registry) {
+		var replicas = new LinkedHashMap<String, DataSource>();
+		for (var i = 0; i < properties.replicas().size(); i++) {
+			var replica = properties.replicas().get(i);
+			var pool = new HikariDataSource();
+			pool.setPoolName("replica-" + i);
+			pool.setJdbcUrl(replica.url());
+			pool.setUsername(StringUtils.hasText(replica.username()) ? replica.username()
+					: primaryProperties.determineUsername());
+			pool.setPassword(StringUtils.hasText(replica.password()) ? replica.password()
+					: primaryProperties.determinePassword());
+			pool.setMaximumPoolSize(replica.maximumPoolSize());
+			pool.setReadOnly(true);
+			pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+			replicas.put(pool.getPoolName(), pool);
+		}
+		return new ReplicaDataSource(primaryDataSource, replicas, properties.maxLag(), properties.lagCheckInterval(),
+				registry);
+	}
+
+	@Bean
+	@Primary
+	LazyConnectionDataSourceProxy dataSource(HikariDataSource primaryDataSource,
+			ReplicaDataSource replicaDataSource) {
+		var dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+		dataSource.setReadOnlyDataSource(replicaDataSource);
+		return dataSource;
+	}
+
+}
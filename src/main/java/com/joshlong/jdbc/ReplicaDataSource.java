@@ -0,0 +1,201 @@
+package com.joshlong.jdbc;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out connections to whichever read replica is next in turn, skipping the ones
+ * that have fallen more than {@code maxLag} behind the primary, or that couldn't be
+ * reached the last time we asked. When there's no replica left, or none was configured,
+ * connections come from the primary instead.
+ * <p>
+ * How far behind each replica is gets checked every {@code lagCheckInterval}, on a
+ * thread of its own, so that nobody waiting for a connection also waits for the check.
+ * Until a replica has answered for the first time it's treated as unreachable.
+ * The lag is published as the {@code jdbc.replica.lag} gauge, tagged with the replica's
+ * name, and every connection that had to come from the primary instead counts towards
+ * {@code jdbc.replica.fallbacks}.
+ *
+ * @author Josh Long
+ */
+class ReplicaDataSource extends AbstractDataSource implements AutoCloseable {
+
+	/**
+	 * a replica that has replayed everything it has received is as current as it can be,
+	 * however long ago its last replayed transaction was, but only as long as it's still
+	 * receiving. one whose WAL receiver isn't streaming has no idea how far behind it is,
+	 * so the answer is {@code null}. only privileged users get to see the receiver's
+	 * status, so if we can't see it we assume it's streaming. a database that isn't a
+	 * replica at all has nothing to replay and is never behind
+	 */
+	private static final String LAG_SQL = """
+			select case
+			           when not pg_is_in_recovery() then 0
+			           when not exists (select 1 from pg_stat_wal_receiver
+			                            where coalesce(status, 'streaming') = 'streaming') then null
+			           when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0
+			           else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0)
+			           end
+			""";
+
+	private static final Duration UNREACHABLE = Duration.ofSeconds(Long.MAX_VALUE);
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	private final DataSource primary;
+
+	private final List<Replica> replicas = new ArrayList<>();
+
+	private final Duration maxLag;
+
+	private final Counter fallbacks;
+
+	private final ScheduledExecutorService scheduler;
+
+	private static final class Replica {
+
+		private final String name;
+
+		private final DataSource dataSource;
+
+		private volatile Duration lag = UNREACHABLE;
+
+		private Replica(String name, DataSource dataSource) {
+			this.name = name;
+			this.dataSource = dataSource;
+		}
+
+	}
+
+	/**
+	 * @param primary where connections come from when no replica will do
+	 * @param replicas the replicas, by name
+	 * @param maxLag how far behind the primary a replica may be and still hand out
+	 * connections
+	 * @param lagCheckInterval how often to check how far behind each replica is
+	 * @param registry where the lag and the fallbacks are published
+	 */
+	ReplicaDataSource(DataSource primary, Map<String, DataSource> replicas, Duration maxLag,
+			Duration lagCheckInterval, MeterRegistry registry) {
+		Assert.notNull(primary, "the primary must not be null");
+		Assert.isTrue(!lagCheckInterval.isNegative() && !lagCheckInterval.isZero(),
+				"the lag check interval must be positive");
+		this.primary = primary;
+		this.maxLag = maxLag;
+		this.fallbacks = Counter.builder("jdbc.replica.fallbacks")
+				.description("read only connections that came from the primary because no replica was current enough")
+				.register(registry);
+		replicas.forEach((name, dataSource) -> {
+			var replica = new Replica(name, dataSource);
+			this.replicas.add(replica);
+			TimeGauge
+					.builder("jdbc.replica.lag", replica, TimeUnit.SECONDS,
+							r -> r.lag == UNREACHABLE ? Double.NaN : r.lag.toMillis() / 1000.0)
+					.description("how far behind the primary the replica was the last time we asked")
+					.tag("replica", name)
+					.register(registry);
+		});
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("replica-lag").factory());
+		if (!this.replicas.isEmpty())
+			this.scheduler.scheduleWithFixedDelay(this::checkLag, 0, lagCheckInterval.toMillis(),
+					TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return this.connect(DataSource::getConnection);
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return this.connect(dataSource -> dataSource.getConnection(username, password));
+	}
+
+	/**
+	 * stops checking the lag, and closes the replicas' pools
+	 */
+	@Override
+	public void close() throws Exception {
+		this.scheduler.shutdownNow();
+		for (var replica : this.replicas)
+			if (replica.dataSource instanceof AutoCloseable closeable)
+				closeable.close();
+	}
+
+	/**
+	 * asks every replica how far behind the primary it is. one that can't be reached, or
+	 * that can't reach the primary, is treated as infinitely far behind until it can
+	 */
+	void checkLag() {
+		for (var replica : this.replicas) {
+			try {
+				replica.lag = this.lag(replica.dataSource);
+			} //
+			catch (Exception e) {
+				if (replica.lag != UNREACHABLE)
+					this.log.warn("couldn't check how far behind replica " + replica.name + " is", e);
+				replica.lag = UNREACHABLE;
+			}
+		}
+	}
+
+	/**
+	 * @return how far behind the primary the replica is, or infinitely far if it isn't
+	 * receiving from the primary and so can't tell
+	 */
+	Duration lag(DataSource replica) {
+		var seconds = new JdbcTemplate(replica).queryForObject(LAG_SQL, Double.class);
+		return seconds == null ? UNREACHABLE : Duration.ofMillis((long) (seconds * 1000));
+	}
+
+	/**
+	 * a replica that fails to hand out a connection is treated as unreachable until the
+	 * next lag check says otherwise
+	 */
+	private Connection connect(Connector connector) throws SQLException {
+		var size = this.replicas.size();
+		var start = this.next.getAndIncrement();
+		for (var i = 0; i < size; i++) {
+			var replica = this.replicas.get(Math.floorMod(start + i, size));
+			if (replica.lag.compareTo(this.maxLag) > 0)
+				continue;
+			try {
+				return connector.connect(replica.dataSource);
+			} //
+			catch (SQLException e) {
+				this.log.warn("couldn't connect to replica " + replica.name, e);
+				replica.lag = UNREACHABLE;
+			}
+		}
+		if (size > 0)
+			this.fallbacks.increment();
+		return connector.connect(this.primary);
+	}
+
+	private interface Connector {
+
+		Connection connect(DataSource dataSource) throws SQLException;
+
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.joshlong.jdbc;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * @param replicas the read replicas that read only transactions go to. With none, every
+ * transaction goes to the primary
+ * @param maxLag how far behind the primary a replica may fall before read only
+ * transactions stop going to it
+ * @param lagCheckInterval how often to ask each replica how far behind it is
+ */
+@ConfigurationProperties(prefix = "bootiful.datasource")
+public record ReplicaProperties(@DefaultValue List<Replica> replicas, @DefaultValue("10s") Duration maxLag,
+		@DefaultValue("5s") Duration lagCheckInterval) {
+
+	/**
+	 * @param url the JDBC URL of the replica
+	 * @param username defaults to the primary's
+	 * @param password defaults to the primary's
+	 * @param maximumPoolSize how many connections to keep open to the replica
+	 */
+	public record Replica(String url, String username, String password, @DefaultValue("10") int maximumPoolSize) {
+	}
+
+}
@@ -5,9 +5,11 @@ import com.joshlong.PodcastService;
 import com.joshlong.index.IndexingFinishedEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestClient;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.net.MalformedURLException;
@@ -27,6 +29,8 @@ class DomAtomPodcastService implements PodcastService, ApplicationListener<Index
 
 	private final Collection<Podcast> podcasts = new CopyOnWriteArrayList<>();
 
+	private final RestClient http;
+
 	private final URL feedUrl;
 
 	private final URL rootHost;
@@ -42,7 +46,8 @@ class DomAtomPodcastService implements PodcastService, ApplicationListener<Index
 		return 0;
 	}).reversed();
 
-	DomAtomPodcastService(URL feedUrl) {
+	DomAtomPodcastService(RestClient http, URL feedUrl) {
+		this.http = http;
 		this.feedUrl = feedUrl;
 		this.rootHost = url(this.feedUrl.getProtocol() + "://" + this.feedUrl.getHost());
 	}
@@ -58,15 +63,23 @@ class DomAtomPodcastService implements PodcastService, ApplicationListener<Index
 			var factory = DocumentBuilderFactory.newInstance();
 			factory.setNamespaceAware(true);
 			var builder = factory.newDocumentBuilder();
-			try (var feedUrl = this.feedUrl.openStream()) {
-				var doc = builder.parse(feedUrl);
-				doc.getDocumentElement().normalize();
-				var episodes = parseEntries(doc);
-				episodes.sort(this.comparator);
-				synchronized (this.monitor) {
-					this.podcasts.clear();
-					this.podcasts.addAll(episodes);
+			var doc = this.http.get().uri(this.feedUrl.toURI()).exchange((request, response) -> {
+				if (response.getStatusCode().isError())
+					throw new IllegalStateException(
+							"could not read the podcast feed " + this.feedUrl + ": " + response.getStatusCode());
+				try (var body = response.getBody()) {
+					return builder.parse(body);
+				} //
+				catch (SAXException e) {
+					throw new IllegalStateException("could not parse the podcast feed " + this.feedUrl, e);
 				}
+			});
+			doc.getDocumentElement().normalize();
+			var episodes = parseEntries(doc);
+			episodes.sort(this.comparator);
+			synchronized (this.monitor) {
+				this.podcasts.clear();
+				this.podcasts.addAll(episodes);
 			}
 		} //
 		catch (Exception e) {
@@ -3,6 +3,7 @@ package com.joshlong.podcasts;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestClient;
 
 import java.net.URL;
 
@@ -10,8 +11,8 @@ import java.net.URL;
 class PodcastConfiguration {
 
 	@Bean
-	DomAtomPodcastService domAtomPodcastService(@Value("${blog.rss.feed}") URL url) {
-		return new DomAtomPodcastService(url);
+	DomAtomPodcastService domAtomPodcastService(RestClient http, @Value("${blog.rss.feed}") URL url) {
+		return new DomAtomPodcastService(http, url);
 	}
 
 }
@@ -1,7 +1,11 @@
 package com.joshlong.videos;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
 
+import java.io.File;
+import java.time.Duration;
 import java.util.Map;
 
 @ConfigurationProperties(prefix = "bootiful")
@@ -11,10 +15,51 @@ public record JobProperties(Map<String, String> channels, Youtube youtube, Batch
 	public record Twitter(String username, String clientId, String clientSecret) {
 	}
 
-	public record Batch(String[] channelIds, boolean run) {
+	/**
+	 * @param channelIds the channels to ingest
+	 * @param run whether to run the ingest at all
+	 * @param incremental whether runs between full ingests should only read new uploads
+	 * and refresh the statistics that are due
+	 * @param fullIngestInterval how long to go between full ingests when
+	 * {@code incremental} is enabled
+	 * @param restart whether to start a new run, rather than resume a full run that died
+	 * part way through
+	 * @param interval how long to wait between the end of one run and the start of the
+	 * next when {@code incremental} is disabled
+	 * @param incrementalInterval how long to wait between runs when {@code incremental}
+	 * is enabled, so at most an hour if the statistics of the newest videos are to be
+	 * refreshed hourly
+	 */
+	public record Batch(String[] channelIds, boolean run, @DefaultValue("false") boolean incremental,
+			@DefaultValue("7d") Duration fullIngestInterval, @DefaultValue("false") boolean restart,
+			@DefaultValue("12h") Duration interval, @DefaultValue("1h") Duration incrementalInterval) {
 	}
 
-	public record Youtube(String apiKey) {
+	/**
+	 * @param apiKey the YouTube Data API key
+	 * @param maxConcurrentRequests how many requests to the YouTube Data API may be in
+	 * flight at once, across all the channels being ingested
+	 * @param cache where and how much to cache of the YouTube Data API's responses
+	 * @param quota how much of the YouTube Data API's quota we may spend, and how fast
+	 */
+	public record Youtube(String apiKey, @DefaultValue("8") int maxConcurrentRequests, @DefaultValue Cache cache,
+			@DefaultValue Quota quota) {
+
+		public record Cache(@DefaultValue("true") boolean enabled, File directory,
+				@DefaultValue("100MB") DataSize maxSize) {
+		}
+
+		/**
+		 * @param dailyUnits the quota units the API key gets each day
+		 * @param lowPriorityReserve how many of those units are kept back for the
+		 * requests that matter, like reading new uploads, and may not be spent on
+		 * searches or on refreshing statistics
+		 * @param requestsPerSecond how many requests may go out each second, on average
+		 * @param burst how many requests may go out at once
+		 */
+		public record Quota(@DefaultValue("10000") long dailyUnits, @DefaultValue("2000") long lowPriorityReserve,
+				@DefaultValue("10") double requestsPerSecond, @DefaultValue("20") int burst) {
+		}
 	}
 
 	public record Promotion(String[] playlistIds) {
@@ -1,25 +1,49 @@
 package com.joshlong.videos;
 
 import com.joshlong.videos.youtube.IngestJobInitiatedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.FixedDelayTask;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.util.concurrent.TimeUnit;
 
+/**
+ * Kicks off the ingest every {@code bootiful.batch.interval} or, when incremental ingest
+ * is enabled, every {@code bootiful.batch.incremental-interval}, so that the statistics
+ * tiers that are due every hour actually get refreshed every hour. Whether a given run
+ * is full or incremental is up to the ingest. The first run starts as soon as the
+ * application has, and every run after that a whole interval after the last one
+ * finished, so that a slow run never overlaps the next one on the same node. The ingest
+ * itself takes a lock that keeps the runs of different nodes apart.
+ */
 @Configuration
-class SchedulingConfiguration {
+class SchedulingConfiguration implements SchedulingConfigurer {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
 
 	private final ApplicationEventPublisher applicationEventPublisher;
 
-	SchedulingConfiguration(ApplicationEventPublisher applicationEventPublisher) {
+	private final JobProperties properties;
+
+	SchedulingConfiguration(ApplicationEventPublisher applicationEventPublisher, JobProperties properties) {
 		this.applicationEventPublisher = applicationEventPublisher;
+		this.properties = properties;
+	}
+
+	@Override
+	public void configureTasks(ScheduledTaskRegistrar registrar) {
+		var batch = this.properties.batch();
+		var interval = batch.incremental() ? batch.incrementalInterval() : batch.interval();
+		registrar.addFixedDelayTask(new FixedDelayTask(this::scheduled, interval, Duration.ZERO));
 	}
 
-	@Scheduled(fixedRate = 12, timeUnit = TimeUnit.HOURS)
-	public void scheduled() {
-		System.out.println("scheduled!");
+	void scheduled() {
+		this.log.debug("starting the scheduled ingest");
 		this.applicationEventPublisher.publishEvent(new IngestJobInitiatedEvent(Instant.now()));
 	}
 
@@ -0,0 +1,112 @@
+package com.joshlong.videos.api;
+
+import com.joshlong.videos.youtube.IngestNotification;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * {@code LISTEN}s for the {@link IngestNotification} that every ingest run sends when
+ * it's done, and refreshes the parts of the {@link VideoCatalog} that the run changed.
+ * Every node runs one of these, so every node's catalog follows every ingest, whichever
+ * node ran it.
+ * <p>
+ * The listening happens on a connection of its own, to the primary, since replicas
+ * can't {@code LISTEN}, and outside the pool, since it's held for as long as the
+ * application runs. Notifications sent while the connection is down are lost, so after
+ * every reconnect the catalog is loaded again in full.
+ *
+ * @author Josh Long
+ */
+@Component
+class IngestNotificationListener implements SmartLifecycle {
+
+	private static final Duration POLL = Duration.ofSeconds(10);
+
+	private static final Duration RECONNECT = Duration.ofSeconds(5);
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final DataSource dataSource;
+
+	private final JdbcVideoService videoService;
+
+	private volatile boolean running;
+
+	private Thread listener;
+
+	IngestNotificationListener(DataSourceProperties properties, JdbcVideoService videoService) {
+		this.dataSource = properties.initializeDataSourceBuilder().type(SimpleDriverDataSource.class).build();
+		this.videoService = videoService;
+	}
+
+	@Override
+	public void start() {
+		this.running = true;
+		this.listener = Thread.ofVirtual().name("ingest-notification-listener").start(this::listen);
+	}
+
+	@Override
+	public void stop() {
+		this.running = false;
+		this.listener.interrupt();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	private void listen() {
+		var reconnecting = false;
+		while (this.running) {
+			try (var connection = this.dataSource.getConnection()) {
+				try (var statement = connection.createStatement()) {
+					statement.execute("listen " + IngestNotification.CHANNEL);
+				}
+				this.log.info("listening for {} notifications", IngestNotification.CHANNEL);
+				if (reconnecting)
+					this.videoService.refresh();
+				reconnecting = true;
+				var pg = connection.unwrap(PGConnection.class);
+				while (this.running) {
+					var notifications = pg.getNotifications((int) POLL.toMillis());
+					if (notifications != null)
+						for (var notification : notifications)
+							this.onNotification(notification.getParameter());
+				}
+			} //
+			catch (Exception e) {
+				if (!this.running)
+					return;
+				this.log.warn("lost the connection listening for {} notifications; reconnecting in {}",
+						IngestNotification.CHANNEL, RECONNECT, e);
+				try {
+					Thread.sleep(RECONNECT);
+				} //
+				catch (InterruptedException ie) {
+					return;
+				}
+			}
+		}
+	}
+
+	private void onNotification(String payload) {
+		try {
+			var notification = IngestNotification.parse(payload);
+			this.log.debug("refreshing the video catalog after {}", notification);
+			this.videoService.refresh(notification);
+		} //
+		catch (IllegalArgumentException e) {
+			this.log.warn("ignoring a {} notification", IngestNotification.CHANNEL, e);
+		}
+	}
+
+}
@@ -0,0 +1,15 @@
+package com.joshlong.videos.api;
+
+/**
+ * Thrown when the {@code after} cursor of a page isn't one we handed out, which is the
+ * client's mistake, so {@link VideoGraphqlController} reports it as a bad request.
+ *
+ * @author Josh Long
+ */
+class InvalidCursorException extends IllegalArgumentException {
+
+	InvalidCursorException(String cursor) {
+		super("the cursor [" + cursor + "] is not valid");
+	}
+
+}
@@ -1,25 +1,48 @@
 package com.joshlong.videos.api;
 
 import com.joshlong.utils.UrlUtils;
+import com.joshlong.videos.youtube.IngestNotification;
+import com.joshlong.videos.youtube.LeaderboardMetric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.net.URI;
 import java.net.URL;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 /**
  * Represents the view of the data from the SQL database. This is ideal for searching, not
  * to mention that the data is cached, and therefore faster to retrieve. The only
  * drawback, of course, is that the data is somewhat stale.
+ * <p>
+ * Queries are answered from an immutable {@link VideoCatalog} that's swapped in
+ * atomically. It's loaded in full at startup, and every node refreshes the parts that
+ * changed whenever the {@link IngestNotificationListener} hears that an ingest has
+ * finished, wherever it ran. We only go to the database if there's no catalog yet (the
+ * web server starts taking requests before the first one has finished loading) or if
+ * the last attempt to load one failed.
  *
  * @author Josh Long
  */
@@ -27,8 +50,16 @@ import java.util.function.Function;
 @Transactional(readOnly = true)
 class JdbcVideoService implements VideoService {
 
+	private static final int MAX_PAGE_SIZE = 100;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
 	private final JdbcTemplate jdbcTemplate;
 
+	private final AtomicReference<VideoCatalog> catalog = new AtomicReference<>();
+
+	private final ReentrantLock refreshing = new ReentrantLock();
+
 	private final Function<Map<String, Object>, Channel> channelMapper = row -> new Channel(
 			(String) row.get("channel_id"));
 
@@ -45,8 +76,60 @@ class JdbcVideoService implements VideoService {
 		this.jdbcTemplate = jdbcTemplate;
 	}
 
+	/**
+	 * loads the whole catalog, from the primary, for the same reason as
+	 * {@link #refresh(IngestNotification)}: a catalog read from a lagging replica would
+	 * stay behind until the next ingest, and could replace a newer one that a
+	 * notification had already refreshed.
+	 */
+	// readOnly = false overrides the default of this class, so that the routing data
+	// source sends the load to the primary, and repeatable read gives it one snapshot
+	@EventListener(ApplicationReadyEvent.class)
+	@Transactional(readOnly = false, isolation = Isolation.REPEATABLE_READ)
+	public void refresh() {
+		this.refresh(snapshot -> VideoCatalog.load(this.jdbcTemplate, new VideoRowMapper()));
+	}
+
+	/**
+	 * refreshes what an ingest run, on this node or any other, changed. This reads from
+	 * the primary rather than a replica: the notification is sent as soon as the run has
+	 * committed on the primary, and a replica may not have replayed it yet.
+	 */
+	// readOnly = false, so that this goes to the primary too
+	@Transactional(readOnly = false, isolation = Isolation.REPEATABLE_READ)
+	public void refresh(IngestNotification notification) {
+		this.refresh(snapshot -> notification.full() || snapshot == null
+				? VideoCatalog.load(this.jdbcTemplate, new VideoRowMapper())
+				: snapshot.refresh(this.jdbcTemplate, new VideoRowMapper(), notification.channelIds(),
+						notification.playlistIds()));
+	}
+
+	/**
+	 * one refresh at a time, so that a slow full load can't overwrite a newer catalog
+	 */
+	private void refresh(UnaryOperator<VideoCatalog> refresher) {
+		this.refreshing.lock();
+		try {
+			var start = System.currentTimeMillis();
+			var fresh = refresher.apply(this.catalog.get());
+			this.catalog.set(fresh);
+			this.log.info("loaded a video catalog of {} videos, {} channels and {} playlists in {}ms",
+					fresh.videosById().size(), fresh.channelsById().size(), fresh.playlistsById().size(),
+					System.currentTimeMillis() - start);
+		} //
+		catch (Exception e) {
+			this.log.warn("could not load the video catalog; queries will go to the database", e);
+		} //
+		finally {
+			this.refreshing.unlock();
+		}
+	}
+
 	@Override
 	public List<Playlist> playlistsByName(String name) {
+		var snapshot = this.catalog.get();
+		if (snapshot != null)
+			return snapshot.playlistsByName(name);
 		String sql = "select * from yt_playlists where title ilike ?";
 		return this.jdbcTemplate.query(sql,
 				(rs, rowNum) -> new Playlist(rs.getString("playlist_id"), rs.getString("title")), "%" + name + "%");
@@ -54,6 +137,9 @@ class JdbcVideoService implements VideoService {
 
 	@Override
 	public List<Video> videosByChannel(Channel channel) {
+		var snapshot = this.catalog.get();
+		if (snapshot != null)
+			return snapshot.videosByChannel(channel.id());
 		String sql = """
 				select * from
 				    yt_videos v,
@@ -69,6 +155,9 @@ class JdbcVideoService implements VideoService {
 
 	@Override
 	public Playlist playlistById(String id) {
+		var snapshot = this.catalog.get();
+		if (snapshot != null)
+			return snapshot.playlistsById().get(id);
 		String sql = "select * from yt_playlists where playlist_id = ?";
 		return this.jdbcTemplate.queryForObject(sql,
 				(rs, rowNum) -> new Playlist(rs.getString("playlist_id"), rs.getString("title")), id);
@@ -76,6 +165,9 @@ class JdbcVideoService implements VideoService {
 
 	@Override
 	public List<Video> videosByPlaylist(Playlist playlist) {
+		var snapshot = this.catalog.get();
+		if (snapshot != null)
+			return snapshot.videosByPlaylist(playlist.id());
 		String sql = """
 				select v.* from yt_videos v, yt_playlists p, yt_playlist_videos pv
 				    where
@@ -92,6 +184,9 @@ class JdbcVideoService implements VideoService {
 
 	@Override
 	public Channel channelById(String id) {
+		var snapshot = this.catalog.get();
+		if (snapshot != null)
+			return snapshot.channelsById().get(id);
 		String sql = "select * from yt_channels where channel_id = ?";
 		var res = this.jdbcTemplate.query(sql, (rs, rowNum) -> new Channel(rs.getString("channel_id")), id);
 		return res.isEmpty() ? null : res.getFirst();
@@ -99,14 +194,215 @@ class JdbcVideoService implements VideoService {
 
 	@Override
 	public List<Channel> channels() {
+		var snapshot = this.catalog.get();
+		if (snapshot != null)
+			return List.copyOf(snapshot.channelsById().values());
 		String sql = "select * from yt_channels";
 		return this.jdbcTemplate.query(sql, (rs, rowNum) -> new Channel(rs.getString("channel_id")));
 	}
 
+	@Override
+	public Map<Channel, List<Video>> videosByChannels(Collection<Channel> channels) {
+		var snapshot = this.catalog.get();
+		if (snapshot != null)
+			return lookUpEach(channels, channel -> snapshot.videosByChannel(channel.id()));
+		var sql = """
+				select c.channel_id as group_id, v.*
+				from yt_videos v join yt_channel_videos c on v.video_id = c.video_id
+				where c.channel_id = any(?)
+				order by v.published_at desc, v.video_id collate "C" desc
+				""";
+		return this.batch(sql, channels, Channel::id, new VideoRowMapper());
+	}
+
+	@Override
+	public Map<Channel, List<Playlist>> playlistsByChannels(Collection<Channel> channels) {
+		var snapshot = this.catalog.get();
+		if (snapshot != null)
+			return lookUpEach(channels, channel -> snapshot.playlistsByChannel(channel.id()));
+		var sql = """
+				select p.channel_id as group_id, p.* from yt_playlists p
+				where p.channel_id = any(?)
+				order by p.title
+				""";
+		return this.batch(sql, channels, Channel::id,
+				(rs, rowNum) -> new Playlist(rs.getString("playlist_id"), rs.getString("title")));
+	}
+
+	@Override
+	public Map<Playlist, List<Video>> videosByPlaylists(Collection<Playlist> playlists) {
+		var snapshot = this.catalog.get();
+		if (snapshot != null)
+			return lookUpEach(playlists, playlist -> snapshot.videosByPlaylist(playlist.id()));
+		var sql = """
+				select pv.playlist_id as group_id, v.*
+				from yt_videos v join yt_playlist_videos pv on v.video_id = pv.video_id
+				where pv.playlist_id = any(?)
+				order by v.published_at desc, v.video_id collate "C" desc
+				""";
+		return this.batch(sql, playlists, Playlist::id, new VideoRowMapper());
+	}
+
+	private static <K, V> Map<K, List<V>> lookUpEach(Collection<K> keys, Function<K, List<V>> lookup) {
+		var results = new LinkedHashMap<K, List<V>>();
+		for (var key : keys)
+			results.put(key, lookup.apply(key));
+		return results;
+	}
+
+	/**
+	 * runs one query for every key, with their ids in an {@code any(?)}, and hands each
+	 * row to the key whose id is in the row's {@code group_id}
+	 */
+	private <K, V> Map<K, List<V>> batch(String sql, Collection<K> keys, Function<K, String> id,
+			RowMapper<V> mapper) {
+		var keysById = new HashMap<String, K>();
+		var results = new LinkedHashMap<K, List<V>>();
+		for (var key : keys) {
+			keysById.put(id.apply(key), key);
+			results.put(key, new ArrayList<>());
+		}
+		this.jdbcTemplate.query(sql, rs -> {
+			var key = keysById.get(rs.getString("group_id"));
+			results.get(key).add(mapper.mapRow(rs, results.get(key).size()));
+		}, (Object) keysById.keySet().toArray(new String[0]));
+		return results;
+	}
+
+	/**
+	 * always goes to the database, since the catalog has nothing like the GIN index on
+	 * {@code search_vector}. The matches are ordered by rank, best first, and then by id,
+	 * so that the rank and id of the last match on a page are enough to find the next.
+	 */
+	@Override
+	public VideoConnection searchVideos(String query, int first, String after) {
+		var size = pageSize(first);
+		var keys = VideoConnection.keys(after, 2);
+		var sql = """
+				select * from (
+				    select v.*, ts_rank(v.search_vector, q) as rank
+				    from yt_videos v, websearch_to_tsquery('english', ?) q
+				    where v.search_vector @@ q
+				) r
+				%s
+				order by r.rank desc, r.video_id
+				limit ?
+				""".formatted(keys == null ? "" : "where r.rank < ?::real or (r.rank = ?::real and r.video_id > ?)");
+		var rank = keys == null ? null : VideoConnection.key(after, keys[0], Float::valueOf);
+		var args = keys == null ? new Object[] { query, size + 1 }
+				: new Object[] { query, rank, rank, keys[1], size + 1 };
+		var mapper = new VideoRowMapper();
+		var rows = this.jdbcTemplate.query(sql,
+				(rs, rowNum) -> new RankedVideo(mapper.mapRow(rs, rowNum), rs.getFloat("rank")), args);
+		return VideoConnection.of(rows, size, RankedVideo::video,
+				r -> VideoConnection.cursor(Float.toString(r.rank()), r.video().id()));
+	}
+
+	@Override
+	public VideoConnection videosByTag(String tag, int first, String after) {
+		var size = pageSize(first);
+		var snapshot = this.catalog.get();
+		if (snapshot != null)
+			return snapshot.videosByTag(tag, size, after);
+		return this.newestFirst("select * from yt_videos v where v.tags @> array[?]::text[]", size, after, tag);
+	}
+
+	@Override
+	public VideoConnection videosByChannel(String channelId, int first, String after) {
+		var size = pageSize(first);
+		var snapshot = this.catalog.get();
+		if (snapshot != null)
+			return VideoCatalog.page(snapshot.videosByChannel(channelId), size, after);
+		var sql = """
+				select v.* from yt_videos v join yt_channel_videos c on v.video_id = c.video_id
+				where c.channel_id = ?
+				""";
+		return this.newestFirst(sql, size, after, channelId);
+	}
+
+	@Override
+	public VideoConnection videosByPlaylist(String playlistId, int first, String after) {
+		var size = pageSize(first);
+		var snapshot = this.catalog.get();
+		if (snapshot != null)
+			return VideoCatalog.page(snapshot.videosByPlaylist(playlistId), size, after);
+		var sql = """
+				select v.* from yt_videos v join yt_playlist_videos pv on v.video_id = pv.video_id
+				where pv.playlist_id = ?
+				""";
+		return this.newestFirst(sql, size, after, playlistId);
+	}
+
+	/**
+	 * pages through the videos that {@code sql} selects, as {@code v}, newest first.
+	 * Rather than skip the videos on the pages before, it picks up after the
+	 * {@code (published_at, video_id)} in the cursor, so a page costs the same however
+	 * deep it is.
+	 * @param sql a query whose {@code where} clause may be extended with {@code and}
+	 */
+	private VideoConnection newestFirst(String sql, int size, String after, Object... args) {
+		var keys = VideoConnection.keys(after, 2);
+		var keyset = keys == null ? "" : "and (v.published_at, v.video_id collate \"C\") < (?, ?)";
+		var page = """
+				%s %s
+				order by v.published_at desc, v.video_id collate "C" desc
+				limit ?
+				""".formatted(sql.strip(), keyset);
+		var pageArgs = new ArrayList<>(List.of(args));
+		if (keys != null) {
+			pageArgs.add(Timestamp.from(VideoConnection.key(after, keys[0], Instant::parse)));
+			pageArgs.add(keys[1]);
+		}
+		pageArgs.add(size + 1);
+		var rows = this.jdbcTemplate.query(page, new VideoRowMapper(), pageArgs.toArray());
+		return VideoConnection.of(rows, size, video -> video, VideoConnection::cursor);
+	}
+
+	@Override
+	public List<TagCount> tagsByChannel(String channelId) {
+		var snapshot = this.catalog.get();
+		if (snapshot != null)
+			return snapshot.tagsByChannel(channelId);
+		var sql = "select * from yt_channel_tags where channel_id = ? order by video_count desc, tag";
+		return this.jdbcTemplate.query(sql,
+				(rs, rowNum) -> new TagCount(rs.getString("tag"), rs.getInt("video_count")), channelId);
+	}
+
+	@Override
+	public List<Video> topVideosByChannel(String channelId, LeaderboardMetric metric, int size) {
+		return this.leaderboard(new VideoCatalog.Leaderboard("CHANNEL", channelId, metric), size);
+	}
+
+	@Override
+	public List<Video> topVideosByPlaylist(String playlistId, LeaderboardMetric metric, int size) {
+		return this.leaderboard(new VideoCatalog.Leaderboard("PLAYLIST", playlistId, metric), size);
+	}
+
+	private List<Video> leaderboard(VideoCatalog.Leaderboard leaderboard, int size) {
+		var snapshot = this.catalog.get();
+		if (snapshot != null)
+			return snapshot.leaderboard(leaderboard, size);
+		var sql = """
+				select v.* from yt_leaderboards l join yt_videos v on v.video_id = l.video_id
+				where l.scope = ? and l.scope_id = ? and l.metric = ?
+				order by l.position
+				limit ?
+				""";
+		return this.jdbcTemplate.query(sql, new VideoRowMapper(), leaderboard.scope(), leaderboard.id(),
+				leaderboard.metric().name(), Math.max(0, size));
+	}
+
+	private static int pageSize(int first) {
+		return Math.max(1, Math.min(first, MAX_PAGE_SIZE));
+	}
+
 	private static Instant instant(LocalDateTime localDateTime) {
 		return localDateTime.toInstant(ZoneOffset.UTC);
 	}
 
+	private record RankedVideo(Video video, float rank) {
+	}
+
 	private static class VideoRowMapper implements RowMapper<Video> {
 
 		@Override
@@ -116,13 +412,18 @@ class JdbcVideoService implements VideoService {
 						URI.create(rs.getString("standard_thumbnail")).toURL(), rs.getString("description"),
 						rs.getTimestamp("published_at").toInstant(), rs.getInt("view_count"),
 						rs.getInt("favorite_count"), rs.getInt("comment_count"), rs.getInt("like_count"),
-						(String[]) rs.getArray("tags").getArray());
+						tags(rs));
 			} //
 			catch (Exception e) {
 				throw new RuntimeException(e);
 			}
 		}
 
+		private static String[] tags(ResultSet rs) throws SQLException {
+			var array = rs.getArray("tags");
+			return array == null ? new String[0] : (String[]) array.getArray();
+		}
+
 	}
 
 }
@@ -133,6 +434,9 @@ record Playlist(String id, String title) {
 record Channel(String id) {
 }
 
+record TagCount(String tag, int count) {
+}
+
 record Video(String id, String title, URL thumbnail, String description, Instant published, int views, int favorites,
 		int comments, int likes, String[] tags) {
 }
\ No newline at end of file
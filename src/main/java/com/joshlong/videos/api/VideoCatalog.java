@@ -0,0 +1,294 @@
+package com.joshlong.videos.api;
+
+import com.joshlong.videos.youtube.LeaderboardMetric;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * An immutable, in-memory snapshot of everything the video GraphQL API can ask for. The
+ * data only changes when the ingest job runs, so we read it all in once after each run
+ * and answer every query from these maps. Each {@link Video} is created exactly once
+ * and shared by every channel and playlist in which it appears.
+ *
+ * @author Josh Long
+ */
+record VideoCatalog(Map<String, Video> videosById, Map<String, List<Video>> videosByChannel,
+		Map<String, List<Video>> videosByPlaylist, Map<String, List<Video>> videosByTag,
+		Map<String, List<TagCount>> tagsByChannel, Map<Leaderboard, List<Video>> leaderboards,
+		Map<String, Channel> channelsById, Map<String, Playlist> playlistsById,
+		Map<String, List<Playlist>> playlistsByChannel, Map<String, List<Playlist>> playlistsByLowercaseTitle) {
+
+	/**
+	 * the order of every list of videos in the catalog, and in the database queries:
+	 * newest first, then by id, so that {@code (published, id)} is a unique key to page
+	 * by. The database compares ids with the {@code "C"} collation, byte by byte, just as
+	 * {@link String#compareTo(String)} does.
+	 */
+	static final Comparator<Video> NEWEST_FIRST = Comparator.comparing(Video::published)
+			.thenComparing(Video::id)
+			.reversed();
+
+	List<Playlist> playlistsByName(String name) {
+		var lowercaseName = name.toLowerCase(Locale.ROOT);
+		var results = new ArrayList<Playlist>();
+		for (var entry : this.playlistsByLowercaseTitle.entrySet())
+			if (entry.getKey().contains(lowercaseName))
+				results.addAll(entry.getValue());
+		return results;
+	}
+
+	List<Video> videosByChannel(String channelId) {
+		return this.videosByChannel.getOrDefault(channelId, List.of());
+	}
+
+	List<Video> videosByPlaylist(String playlistId) {
+		return this.playlistsById.containsKey(playlistId) ? this.videosByPlaylist.getOrDefault(playlistId, List.of())
+				: List.of();
+	}
+
+	List<Playlist> playlistsByChannel(String channelId) {
+		return this.playlistsByChannel.getOrDefault(channelId, List.of());
+	}
+
+	VideoConnection videosByTag(String tag, int first, String after) {
+		return page(this.videosByTag.getOrDefault(tag, List.of()), first, after);
+	}
+
+	List<TagCount> tagsByChannel(String channelId) {
+		return this.tagsByChannel.getOrDefault(channelId, List.of());
+	}
+
+	/**
+	 * @param scope {@code CHANNEL} or {@code PLAYLIST}
+	 */
+	record Leaderboard(String scope, String id, LeaderboardMetric metric) {
+	}
+
+	List<Video> leaderboard(Leaderboard leaderboard, int size) {
+		var videos = this.leaderboards.getOrDefault(leaderboard, List.of());
+		return videos.subList(0, Math.min(Math.max(0, size), videos.size()));
+	}
+
+	/**
+	 * @param videos sorted {@link #NEWEST_FIRST}
+	 * @param after the cursor of the last video on the previous page, from
+	 * {@link VideoConnection#cursor(Video)}
+	 */
+	static VideoConnection page(List<Video> videos, int first, String after) {
+		var keys = VideoConnection.keys(after, 2);
+		var start = 0;
+		if (keys != null) {
+			// the first video that sorts after the cursor
+			var published = VideoConnection.key(after, keys[0], Instant::parse);
+			var low = 0;
+			var high = videos.size();
+			while (low < high) {
+				var middle = (low + high) >>> 1;
+				var video = videos.get(middle);
+				var comparison = published.compareTo(video.published());
+				if (comparison == 0)
+					comparison = keys[1].compareTo(video.id());
+				if (comparison <= 0)
+					low = middle + 1;
+				else
+					high = middle;
+			}
+			start = low;
+		}
+		var rows = videos.subList(start, Math.min(videos.size(), start + first + 1));
+		return VideoConnection.of(rows, first, video -> video, VideoConnection::cursor);
+	}
+
+	static VideoCatalog load(JdbcTemplate jdbcTemplate, RowMapper<Video> videoMapper) {
+		var videos = new LinkedHashMap<String, Video>();
+		readVideos(jdbcTemplate, videoMapper, videos, "select * from yt_videos");
+		var playlists = Playlists.read(jdbcTemplate);
+		return new VideoCatalog(Map.copyOf(videos),
+				group(jdbcTemplate, videos, "yt_channel_videos", "channel_id", null),
+				group(jdbcTemplate, videos, "yt_playlist_videos", "playlist_id", null), indexByTag(videos),
+				readTags(jdbcTemplate, null), readLeaderboards(jdbcTemplate, videos, null, null),
+				readChannels(jdbcTemplate), playlists.byId(), playlists.byChannel(), playlists.byLowercaseTitle());
+	}
+
+	/**
+	 * a copy of this catalog in which the videos of the given channels and playlists,
+	 * and the tags and leaderboards that are counted from them, have been read again.
+	 * Everything else is carried over, with each video swapped for its new self wherever
+	 * it also appears, so that every video still only exists once. The channels and
+	 * playlists themselves are few enough that they're always read again in full.
+	 * <p>
+	 * No video is ever dropped: only a full ingest deletes anything, and after one of
+	 * those we {@link #load(JdbcTemplate, RowMapper) load} the whole catalog again.
+	 */
+	VideoCatalog refresh(JdbcTemplate jdbcTemplate, RowMapper<Video> videoMapper, Set<String> channelIds,
+			Set<String> playlistIds) {
+		var channels = channelIds.toArray(new String[0]);
+		var playlists = playlistIds.toArray(new String[0]);
+		var videos = new HashMap<>(this.videosById);
+		readVideos(jdbcTemplate, videoMapper, videos, """
+				select * from yt_videos where video_id in (
+				    select video_id from yt_channel_videos where channel_id = any(?)
+				    union
+				    select video_id from yt_playlist_videos where playlist_id = any(?)
+				)
+				""", channels, playlists);
+		var videosByChannel = patch(this.videosByChannel, channelIds::contains,
+				group(jdbcTemplate, videos, "yt_channel_videos", "channel_id", channels), videos);
+		var videosByPlaylist = patch(this.videosByPlaylist, playlistIds::contains,
+				group(jdbcTemplate, videos, "yt_playlist_videos", "playlist_id", playlists), videos);
+		var tagsByChannel = new HashMap<>(this.tagsByChannel);
+		tagsByChannel.keySet().removeAll(channelIds);
+		tagsByChannel.putAll(readTags(jdbcTemplate, channels));
+		var leaderboards = patch(this.leaderboards,
+				leaderboard -> (leaderboard.scope().equals("CHANNEL") ? channelIds : playlistIds)
+						.contains(leaderboard.id()),
+				readLeaderboards(jdbcTemplate, videos, channels, playlists), videos);
+		var all = Playlists.read(jdbcTemplate);
+		return new VideoCatalog(Map.copyOf(videos), videosByChannel, videosByPlaylist, indexByTag(videos),
+				Map.copyOf(tagsByChannel), leaderboards, readChannels(jdbcTemplate), all.byId(), all.byChannel(),
+				all.byLowercaseTitle());
+	}
+
+	private static void readVideos(JdbcTemplate jdbcTemplate, RowMapper<Video> videoMapper,
+			Map<String, Video> videos, String sql, Object... args) {
+		jdbcTemplate.query(sql, rs -> {
+			var video = videoMapper.mapRow(rs, videos.size());
+			videos.put(video.id(), video);
+		}, args);
+	}
+
+	private static Map<String, List<Video>> indexByTag(Map<String, Video> videos) {
+		var sorted = new ArrayList<>(videos.values());
+		sorted.sort(NEWEST_FIRST);
+		var videosByTag = new HashMap<String, List<Video>>();
+		for (var video : sorted)
+			for (var tag : video.tags())
+				videosByTag.computeIfAbsent(tag, t -> new ArrayList<>()).add(video);
+		return copyOf(videosByTag);
+	}
+
+	/**
+	 * @param channels the channels whose tags to read, or {@code null} for every channel
+	 */
+	private static Map<String, List<TagCount>> readTags(JdbcTemplate jdbcTemplate, String[] channels) {
+		var tagsByChannel = new HashMap<String, List<TagCount>>();
+		jdbcTemplate.query("""
+				select * from yt_channel_tags
+				where ?::text[] is null or channel_id = any(?)
+				order by channel_id, video_count desc, tag
+				""", rs -> {
+			tagsByChannel.computeIfAbsent(rs.getString("channel_id"), c -> new ArrayList<>())
+					.add(new TagCount(rs.getString("tag"), rs.getInt("video_count")));
+		}, channels, channels);
+		return copyOf(tagsByChannel);
+	}
+
+	/**
+	 * @param channels the channels whose leaderboards to read, or {@code null} for every
+	 * leaderboard
+	 * @param playlists the playlists whose leaderboards to read, along with the channels'
+	 */
+	private static Map<Leaderboard, List<Video>> readLeaderboards(JdbcTemplate jdbcTemplate, Map<String, Video> videos,
+			String[] channels, String[] playlists) {
+		var leaderboards = new HashMap<Leaderboard, List<Video>>();
+		jdbcTemplate.query("""
+				select * from yt_leaderboards
+				where ?::text[] is null
+				   or (scope = 'CHANNEL' and scope_id = any(?))
+				   or (scope = 'PLAYLIST' and scope_id = any(?))
+				order by scope, scope_id, metric, position
+				""", rs -> {
+			var video = videos.get(rs.getString("video_id"));
+			if (video != null)
+				leaderboards
+						.computeIfAbsent(new Leaderboard(rs.getString("scope"), rs.getString("scope_id"),
+								LeaderboardMetric.valueOf(rs.getString("metric"))), k -> new ArrayList<>())
+						.add(video);
+		}, channels, channels, playlists);
+		return copyOf(leaderboards);
+	}
+
+	private static Map<String, Channel> readChannels(JdbcTemplate jdbcTemplate) {
+		var channels = new LinkedHashMap<String, Channel>();
+		jdbcTemplate.query("select channel_id from yt_channels", rs -> {
+			var channel = new Channel(rs.getString("channel_id"));
+			channels.put(channel.id(), channel);
+		});
+		return Map.copyOf(channels);
+	}
+
+	private record Playlists(Map<String, Playlist> byId, Map<String, List<Playlist>> byChannel,
+			Map<String, List<Playlist>> byLowercaseTitle) {
+
+		static Playlists read(JdbcTemplate jdbcTemplate) {
+			var playlists = new LinkedHashMap<String, Playlist>();
+			var playlistsByTitle = new HashMap<String, List<Playlist>>();
+			var playlistsByChannel = new HashMap<String, List<Playlist>>();
+			jdbcTemplate.query("select playlist_id, title, channel_id from yt_playlists order by title", rs -> {
+				var playlist = new Playlist(rs.getString("playlist_id"), rs.getString("title"));
+				playlists.put(playlist.id(), playlist);
+				playlistsByChannel.computeIfAbsent(rs.getString("channel_id"), c -> new ArrayList<>()).add(playlist);
+				playlistsByTitle.computeIfAbsent(playlist.title().toLowerCase(Locale.ROOT), t -> new ArrayList<>())
+						.add(playlist);
+			});
+			return new Playlists(Map.copyOf(playlists), copyOf(playlistsByChannel), copyOf(playlistsByTitle));
+		}
+
+	}
+
+	/**
+	 * walks a join table ordered by the video's publication date, newest first, so that
+	 * each group comes out already sorted.
+	 * @param keys the groups to read, or {@code null} for every group
+	 */
+	private static Map<String, List<Video>> group(JdbcTemplate jdbcTemplate, Map<String, Video> videos,
+			String joinTable, String keyColumn, String[] keys) {
+		var sql = """
+				select j.%1$s as group_id, j.video_id as video_id
+				from %2$s j join yt_videos v on v.video_id = j.video_id
+				where ?::text[] is null or j.%1$s = any(?)
+				order by v.published_at desc, v.video_id collate "C" desc
+				""".formatted(keyColumn, joinTable);
+		var groups = new HashMap<String, List<Video>>();
+		jdbcTemplate.query(sql, rs -> {
+			var video = videos.get(rs.getString("video_id"));
+			if (video != null)
+				groups.computeIfAbsent(rs.getString("group_id"), k -> new ArrayList<>()).add(video);
+		}, keys, keys);
+		return copyOf(groups);
+	}
+
+	/**
+	 * the groups that aren't affected, with each of their videos swapped for the one in
+	 * {@code videos}, and the fresh groups in place of the ones that are. An affected
+	 * group that has no fresh counterpart is gone.
+	 */
+	private static <K> Map<K, List<Video>> patch(Map<K, List<Video>> groups, Predicate<K> affected,
+			Map<K, List<Video>> fresh, Map<String, Video> videos) {
+		var results = new HashMap<K, List<Video>>();
+		groups.forEach((key, list) -> {
+			if (!affected.test(key))
+				results.put(key, list.stream().map(video -> videos.get(video.id())).toList());
+		});
+		results.putAll(fresh);
+		return Map.copyOf(results);
+	}
+
+	private static <K, T> Map<K, List<T>> copyOf(Map<K, List<T>> groups) {
+		var results = new HashMap<K, List<T>>();
+		groups.forEach((key, list) -> results.put(key, List.copyOf(list)));
+		return Map.copyOf(results);
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.joshlong.videos.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A page of videos, shaped like a
+ * <a href="https://relay.dev/graphql/connections.htm">Relay connection</a>. The cursors
+ * are opaque to clients, but they're nothing more than the keys of the last row on the
+ * page, so that the next page can pick up with a keyset lookup instead of an offset.
+ *
+ * @author Josh Long
+ */
+record VideoConnection(List<VideoEdge> edges, PageInfo pageInfo) {
+
+	private static final String SEPARATOR = "\n";
+
+	/**
+	 * @param rows up to {@code first + 1} rows; the one past {@code first} only tells us
+	 * that there's another page
+	 * @param video the video in each row
+	 * @param cursor the keys of each row, encoded with {@link #cursor(String...)}
+	 */
+	static <T> VideoConnection of(List<T> rows, int first, Function<T, Video> video, Function<T, String> cursor) {
+		var edges = new ArrayList<VideoEdge>(Math.min(rows.size(), first));
+		for (var row : rows.subList(0, Math.min(rows.size(), first)))
+			edges.add(new VideoEdge(cursor.apply(row), video.apply(row)));
+		var start = edges.isEmpty() ? null : edges.getFirst().cursor();
+		var end = edges.isEmpty() ? null : edges.getLast().cursor();
+		return new VideoConnection(List.copyOf(edges), new PageInfo(rows.size() > first, false, start, end));
+	}
+
+	/**
+	 * @return a cursor for the keys by which videos are ordered
+	 * {@link VideoCatalog#NEWEST_FIRST}
+	 */
+	static String cursor(Video video) {
+		return cursor(video.published().toString(), video.id());
+	}
+
+	static String cursor(String... keys) {
+		return Base64.getUrlEncoder()
+				.withoutPadding()
+				.encodeToString(String.join(SEPARATOR, keys).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return the keys in {@code cursor}, or {@code null} if there's no cursor
+	 * @throws InvalidCursorException if {@code cursor} doesn't have {@code count} keys
+	 */
+	static String[] keys(String cursor, int count) {
+		if (cursor == null || cursor.isBlank())
+			return null;
+		try {
+			var keys = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR, -1);
+			if (keys.length == count)
+				return keys;
+		} //
+		catch (IllegalArgumentException e) {
+			// fall through
+		}
+		throw new InvalidCursorException(cursor);
+	}
+
+	/**
+	 * @return one of the keys from {@link #keys(String, int)}, parsed
+	 * @throws InvalidCursorException if {@code parse} can't make sense of the key
+	 */
+	static <T> T key(String cursor, String key, Function<String, T> parse) {
+		try {
+			return parse.apply(key);
+		} //
+		catch (RuntimeException e) {
+			throw new InvalidCursorException(cursor);
+		}
+	}
+
+}
+
+record VideoEdge(String cursor, Video node) {
+}
+
+record PageInfo(boolean hasNextPage, boolean hasPreviousPage, String startCursor, String endCursor) {
+}
@@ -1,12 +1,20 @@
 package com.joshlong.videos.api;
 
 import com.joshlong.videos.JobProperties;
+import com.joshlong.videos.youtube.LeaderboardMetric;
+import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import graphql.schema.DataFetchingEnvironment;
 import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
+import org.springframework.graphql.data.method.annotation.GraphQlExceptionHandler;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.execution.ErrorType;
 import org.springframework.stereotype.Controller;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -33,14 +41,55 @@ class VideoGraphqlController {
 	}
 
 	@QueryMapping
-	Collection<Video> videosByPlaylist(@Argument String playlistId) {
-		var pl = this.videoService.playlistById(playlistId);
-		return this.videoService.videosByPlaylist(pl);
+	VideoConnection videosByPlaylist(@Argument String playlistId, @Argument int first, @Argument String after) {
+		return this.videoService.videosByPlaylist(playlistId, first, after);
 	}
 
 	@QueryMapping
-	Collection<Video> videosByChannel(@Argument String channelId) {
-		return videoService.videosByChannel(this.videoService.channelById(channelId));
+	VideoConnection videosByChannel(@Argument String channelId, @Argument int first, @Argument String after) {
+		return this.videoService.videosByChannel(channelId, first, after);
+	}
+
+	@QueryMapping
+	VideoConnection searchVideos(@Argument String query, @Argument int first, @Argument String after) {
+		return this.videoService.searchVideos(query, first, after);
+	}
+
+	@QueryMapping
+	VideoConnection videosByTag(@Argument String tag, @Argument int first, @Argument String after) {
+		return this.videoService.videosByTag(tag, first, after);
+	}
+
+	@QueryMapping
+	Collection<TagCount> tagsByChannel(@Argument String channelId) {
+		return this.videoService.tagsByChannel(channelId);
+	}
+
+	@QueryMapping
+	Collection<Video> topVideosByChannel(@Argument String channelId, @Argument LeaderboardMetric metric,
+			@Argument int size) {
+		return this.videoService.topVideosByChannel(channelId, metric, size);
+	}
+
+	@QueryMapping
+	Collection<Video> topVideosByPlaylist(@Argument String playlistId, @Argument LeaderboardMetric metric,
+			@Argument int size) {
+		return this.videoService.topVideosByPlaylist(playlistId, metric, size);
+	}
+
+	@BatchMapping(typeName = "Channel", field = "videos")
+	Map<Channel, List<Video>> channelVideos(List<Channel> channels) {
+		return this.videoService.videosByChannels(channels);
+	}
+
+	@BatchMapping(typeName = "Channel", field = "playlists")
+	Map<Channel, List<Playlist>> channelPlaylists(List<Channel> channels) {
+		return this.videoService.playlistsByChannels(channels);
+	}
+
+	@BatchMapping(typeName = "Playlist", field = "videos")
+	Map<Playlist, List<Video>> playlistVideos(List<Playlist> playlists) {
+		return this.videoService.videosByPlaylists(playlists);
 	}
 
 	@QueryMapping
@@ -57,4 +106,12 @@ class VideoGraphqlController {
 		return this.videoService.videosByChannel(this.videoService.channelById(this.ids.get("coffeesoftware")));
 	}
 
+	@GraphQlExceptionHandler
+	GraphQLError invalidCursor(InvalidCursorException e, DataFetchingEnvironment environment) {
+		return GraphqlErrorBuilder.newError(environment)
+				.errorType(ErrorType.BAD_REQUEST)
+				.message(e.getMessage())
+				.build();
+	}
+
 }
@@ -1,6 +1,10 @@
 package com.joshlong.videos.api;
 
+import com.joshlong.videos.youtube.LeaderboardMetric;
+
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A service for working with the database.
@@ -13,12 +17,52 @@ interface VideoService {
 
 	List<Video> videosByChannel(Channel channel);
 
+	/**
+	 * @return a page of the channel's videos, newest first
+	 * @param after the cursor of the last video on the previous page, if any
+	 */
+	VideoConnection videosByChannel(String channelId, int first, String after);
+
 	Playlist playlistById(String id);
 
 	List<Video> videosByPlaylist(Playlist playlist);
 
+	VideoConnection videosByPlaylist(String playlistId, int first, String after);
+
 	Channel channelById(String id);
 
 	List<Channel> channels();
 
+	/**
+	 * the batched forms of {@link #videosByChannel(Channel)} and friends, so that asking
+	 * for the videos of many channels costs one lookup, not one per channel
+	 */
+	Map<Channel, List<Video>> videosByChannels(Collection<Channel> channels);
+
+	Map<Channel, List<Playlist>> playlistsByChannels(Collection<Channel> channels);
+
+	Map<Playlist, List<Video>> videosByPlaylists(Collection<Playlist> playlists);
+
+	/**
+	 * @param query words, quoted phrases and {@code -exclusions}, as you'd type them into
+	 * a search engine
+	 * @param after the cursor of the last video on the previous page, if any
+	 */
+	VideoConnection searchVideos(String query, int first, String after);
+
+	VideoConnection videosByTag(String tag, int first, String after);
+
+	/**
+	 * @return how many of the channel's videos carry each tag, most popular first
+	 */
+	List<TagCount> tagsByChannel(String channelId);
+
+	/**
+	 * @return up to {@code size} of the channel's best videos by the given metric, best
+	 * first
+	 */
+	List<Video> topVideosByChannel(String channelId, LeaderboardMetric metric, int size);
+
+	List<Video> topVideosByPlaylist(String playlistId, LeaderboardMetric metric, int size);
+
 }
@@ -0,0 +1,69 @@
+package com.joshlong.videos.youtube;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * What a finished ingest run tells every node, with a PostgreSQL {@code NOTIFY} on the
+ * {@link #CHANNEL} channel, so that each can refresh whatever it has cached about the
+ * channels and playlists that the run wrote. The notification is only delivered once
+ * the run has committed, and only to the nodes listening at the time.
+ *
+ * @param runId the id of the ingest run
+ * @param full whether everything may have changed, as it may have after a full run,
+ * which deletes whatever it didn't see. When it's {@code true}, the ids are empty
+ * @param channelIds the channels whose videos the run wrote
+ * @param playlistIds the playlists whose videos the run wrote
+ * @author Josh Long
+ */
+public record IngestNotification(int runId, boolean full, Set<String> channelIds, Set<String> playlistIds) {
+
+	public static final String CHANNEL = "yt_ingest_finished";
+
+	/**
+	 * PostgreSQL won't deliver a payload of 8000 bytes or more
+	 */
+	static final int MAX_PAYLOAD_BYTES = 7_999;
+
+	private static final ObjectMapper JSON = new ObjectMapper();
+
+	public IngestNotification {
+		channelIds = Set.copyOf(channelIds);
+		playlistIds = Set.copyOf(playlistIds);
+	}
+
+	/**
+	 * @return the notification for a run that changed the given channels and playlists,
+	 * or, if there are too many of them to fit in a payload, for a run that may have
+	 * changed everything
+	 */
+	public static IngestNotification of(int runId, boolean full, Set<String> channelIds, Set<String> playlistIds) {
+		if (full)
+			return new IngestNotification(runId, true, Set.of(), Set.of());
+		var notification = new IngestNotification(runId, false, channelIds, playlistIds);
+		return notification.payload().getBytes(StandardCharsets.UTF_8).length > MAX_PAYLOAD_BYTES
+				? new IngestNotification(runId, true, Set.of(), Set.of()) : notification;
+	}
+
+	public static IngestNotification parse(String payload) {
+		try {
+			return JSON.readValue(payload, IngestNotification.class);
+		} //
+		catch (JsonProcessingException e) {
+			throw new IllegalArgumentException("'" + payload + "' isn't an ingest notification", e);
+		}
+	}
+
+	public String payload() {
+		try {
+			return JSON.writeValueAsString(this);
+		} //
+		catch (JsonProcessingException e) {
+			throw new IllegalStateException("couldn't write " + this, e);
+		}
+	}
+
+}
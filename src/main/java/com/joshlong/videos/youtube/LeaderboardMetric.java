@@ -0,0 +1,24 @@
+package com.joshlong.videos.youtube;
+
+/**
+ * What the videos on a leaderboard are ranked by. The ingest keeps the top videos of
+ * every channel and playlist by each of these, and the API serves them.
+ *
+ * @author Josh Long
+ */
+public enum LeaderboardMetric {
+
+	VIEWS, LIKES,
+
+	/**
+	 * likes as a percentage of views, for videos with enough views for that to mean
+	 * something
+	 */
+	RATING,
+
+	/**
+	 * views per day since publication, for recent videos
+	 */
+	VELOCITY
+
+}
@@ -2,5 +2,10 @@ package com.joshlong.videos.youtube.client;
 
 import java.util.Date;
 
-public record Channel(String channelId, String title, String description, Date publishedAt) {
+/**
+ * @param uploadsPlaylistId the id of the playlist YouTube keeps of every video uploaded
+ * to the channel, or {@code null} if it doesn't have one
+ */
+public record Channel(String channelId, String title, String description, Date publishedAt,
+		String uploadsPlaylistId) {
 }
@@ -8,5 +8,5 @@ import java.util.Collection;
  * @param videos
  */
 public record ChannelVideos(String channelId, Collection<Video> videos, String nextPageToken,
-		String previousPageToken) {
+		String previousPageToken) implements VideoPage {
 }
@@ -1,29 +1,82 @@
 package com.joshlong.videos.youtube.client;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.joshlong.utils.UrlUtils;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.joshlong.videos.youtube.client.YoutubeJsonDecoder.ItemReader;
+import com.joshlong.videos.youtube.client.YoutubeJsonDecoder.Page;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.ResponseErrorHandler;
 import org.springframework.web.client.RestClient;
 
-import java.time.Instant;
+import java.time.Duration;
 import java.util.*;
-
-import static com.joshlong.videos.youtube.client.DefaultYoutubeClient.JsonFormattingUtils.*;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
 
 class DefaultYoutubeClient implements YoutubeClient {
 
+	/**
+	 * how long to wait for concurrent lookups to pile up before sending a partial batch
+	 * of ids
+	 */
+	private static final Duration BATCH_WINDOW = Duration.ofMillis(10);
+
+	private static final ResponseErrorHandler ERRORS = new DefaultResponseErrorHandler();
+
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
 	private final RestClient http;
 
 	private final String apiKey;
 
-	DefaultYoutubeClient(RestClient http, String apiKey) {
+	private final Semaphore permits;
+
+	private final QuotaScheduler quota;
+
+	private final YoutubeJsonDecoder decoder;
+
+	private final IdBatcher<Video> videos = new IdBatcher<>(this::fetchVideosByIds, BATCH_WINDOW);
+
+	private final IdBatcher<VideoStatistics> statistics = new IdBatcher<>(this::fetchVideoStatisticsByIds,
+			BATCH_WINDOW);
+
+	private final IdBatcher<Channel> channels = new IdBatcher<>(this::fetchChannelsByIds, BATCH_WINDOW);
+
+	private final IdBatcher<Playlist> playlists = new IdBatcher<>(this::fetchPlaylistsByIds, BATCH_WINDOW);
+
+	DefaultYoutubeClient(RestClient http, String apiKey, int maxConcurrentRequests, QuotaScheduler quota) {
+		Assert.isTrue(maxConcurrentRequests > 0, "you must allow at least one concurrent request");
 		this.http = http;
 		this.apiKey = apiKey;
+		this.permits = new Semaphore(maxConcurrentRequests);
+		this.quota = quota;
+		this.decoder = new YoutubeJsonDecoder(new JsonFactory());
+	}
+
+	/**
+	 * every call to the YouTube Data API goes through here, so that no matter how many
+	 * threads the ingest fans out to, we never have more than a fixed number of requests
+	 * in flight, and never spend more quota than we've got.
+	 */
+	private <T> Page<T> get(YoutubeEndpoint endpoint, String uri, Map<String, ?> uriVariables,
+			ItemReader<T> reader) {
+		this.quota.acquire(endpoint);
+		this.permits.acquireUninterruptibly();
+		try {
+			return this.http.get().uri(uri, uriVariables).exchange((request, response) -> {
+				if (ERRORS.hasError(response))
+					ERRORS.handleError(response);
+				try (var body = response.getBody()) {
+					return this.decoder.page(body, reader);
+				}
+			});
+		} //
+		finally {
+			this.permits.release();
+		}
 	}
 
 	@Override
@@ -33,188 +86,159 @@ class DefaultYoutubeClient implements YoutubeClient {
 
 	@Override
 	public Channel getChannelById(String channelId) {
-		return findChannel("&id={channelId}", Map.of("channelId", channelId));
+		var channel = this.channels.load(channelId).join();
+		Assert.notNull(channel, () -> "there was no Channel found for id " + channelId);
+		return channel;
+	}
+
+	private Map<String, Channel> fetchChannelsByIds(List<String> channelIds) {
+		var uri = "https://youtube.googleapis.com/youtube/v3/channels?part=snippet,contentDetails&key={key}&id={ids}&maxResults={max}";
+		var page = this.get(YoutubeEndpoint.CHANNELS, uri,
+				Map.of("key", this.apiKey, "ids", String.join(",", channelIds), "max", IdBatcher.MAX_IDS_PER_REQUEST),
+				YoutubeJsonDecoder::channel);
+		var map = new HashMap<String, Channel>();
+		for (var channel : page.items())
+			map.put(channel.channelId(), channel);
+		return map;
 	}
 
 	/**
-	 * todo we need to decompose this a little: to get a channel for a username. a method
-	 * to get uploads playlist for a channel. to get all videos from a playlist.
-	 * <p>
 	 * This returns all the videos for a given channel
 	 * @param username the username whose channel content we want to find
 	 * @return all the videos
 	 */
 	@Override
 	public Collection<Video> getAllVideosByUsernameUploads(String username) {
-		// https://stackoverflow.com/questions/18953499/youtube-api-to-fetch-all-videos-on-a-channel/27872244#27872244
-		// this solution has a low quota cost and seems to truly return <em>all</em> the
-		// videos
-		var playlistForChannel = "https://www.googleapis.com/youtube/v3/channels?part=contentDetails&forUsername={user}&key={key}";
-		var jsonNode = this.http//
-				.get()//
-				.uri(playlistForChannel, Map.of("user", username, "key", this.apiKey))//
-				.retrieve()//
-				.body(JsonNode.class);//
-
-		var uploadsPlaylistId = jsonNode//
-				.get("items")//
-				.get(0).get("contentDetails")//
-				.get("relatedPlaylists")//
-				.get("uploads")//
-				.textValue();
-
-		return getAllVideosByPlaylist(uploadsPlaylistId);
-
-	}
-
-	private Video buildVideoFromJsonNode(JsonNode item) {
-		var id = item.get("id").textValue();
-		var snippet = item.get("snippet");
-		var channelId = snippet.get("channelId").textValue();
-		var publishedAt = buildDateFrom(snippet.get("publishedAt").textValue());
-		var description = snippet.get("description").textValue();
-		var title = snippet.get("title").textValue();
-		var thumbnailUrl = UrlUtils.url(snippet.get("thumbnails").get("default").get("url").textValue());
-		var tags = jsonNodeOrNull(snippet, "tags");
-		var upcoming = snippet.get("liveBroadcastContent").textValue() != null
-				&& snippet.get("liveBroadcastContent").textValue().contains("upcoming");
-		var statistics = item.get("statistics");
-		var viewCount = numberOrZero(statistics, "viewCount");
-		var likeCount = numberOrZero(statistics, "likeCount");
-		var favCount = numberOrZero(statistics, "favoriteCount");
-		var commentCount = numberOrZero(statistics, "commentCount");
-		var categoryId = Integer.parseInt(snippet.get("categoryId").textValue());
-		var tagsList = new ArrayList<String>();
-		if (null != tags)
-			for (var tag : tags)
-				tagsList.add(tag.textValue());
-		return new Video(id, title, description, publishedAt, thumbnailUrl, tagsList, categoryId, viewCount, likeCount,
-				favCount, commentCount, channelId, upcoming);
+		var channel = this.getChannelByUsername(username);
+		return getAllVideosByPlaylist(uploadsPlaylistId(channel));
 	}
 
 	@Override
 	public Map<String, Video> getVideosByIds(List<String> videoIds) {
+		return this.videos.loadAll(videoIds);
+	}
+
+	private Map<String, Video> fetchVideosByIds(List<String> videoIds) {
 		var joinedIds = String.join(",", videoIds);
 		var url = "https://youtube.googleapis.com/youtube/v3/videos?part={parts}&id={ids}&key={key}";
-		var jn = this.http.get()//
-				.uri(url, Map.of("ids", joinedIds, "key", this.apiKey, "parts", "snippet,statistics"))//
-				.retrieve()//
-				.body(JsonNode.class);//
-		var items = jn.get("items");
-		var list = new ArrayList<Video>();
-		for (var item : items)
-			list.add(buildVideoFromJsonNode(item));
+		var page = this.get(YoutubeEndpoint.VIDEOS, url,
+				Map.of("ids", joinedIds, "key", this.apiKey, "parts", "snippet,statistics"), YoutubeJsonDecoder::video);
 		var map = new HashMap<String, Video>();
-		for (var m : list)
-			map.put(m.videoId(), m);
+		for (var video : page.items())
+			map.put(video.videoId(), video);
+		return map;
+	}
+
+	@Override
+	public Map<String, VideoStatistics> getVideoStatisticsByIds(List<String> videoIds) {
+		return this.statistics.loadAll(videoIds);
+	}
+
+	private Map<String, VideoStatistics> fetchVideoStatisticsByIds(List<String> videoIds) {
+		var url = "https://youtube.googleapis.com/youtube/v3/videos?part=statistics&id={ids}&key={key}";
+		var page = this.get(YoutubeEndpoint.VIDEO_STATISTICS, url,
+				Map.of("ids", String.join(",", videoIds), "key", this.apiKey), YoutubeJsonDecoder::videoStatistics);
+		var map = new HashMap<String, VideoStatistics>();
+		for (var statistics : page.items())
+			map.put(statistics.videoId(), statistics);
 		return map;
 	}
 
 	@Override
 	public Video getVideoById(String videoId) {
-		var map = this.getVideosByIds(List.of(videoId));
+		var video = this.videos.load(videoId).join();
 
-		if (!map.isEmpty())
-			return map.get(videoId);
+		if (video != null)
+			return video;
 
 		throw new IllegalArgumentException("No video with id " + videoId + " found");
 	}
 
-	private Playlist buildPlaylistForJsonNode(JsonNode jsonNode) {
-		var itemCount = jsonNode.get("contentDetails").get("itemCount").intValue();
-		var playlistId = jsonNode.get("id").textValue();
-		var snippet = jsonNode.get("snippet");
-		var title = snippet.get("title").textValue();
-		var description = snippet.get("description").textValue();
-		var publishedAt = buildDateFrom(snippet.get("publishedAt").textValue());
-		var channelId = snippet.get("channelId").textValue();
-		return new Playlist(playlistId, channelId, publishedAt, title, description, itemCount);
+	@Override
+	public Collection<Video> getAllVideosByPlaylist(String playlistId) {
+		return this.streamVideosByPlaylist(playlistId, Integer.MAX_VALUE).toList();
 	}
 
 	@Override
-	public Collection<Video> getAllVideosByPlaylist(String playlistId) {
-		var playlistVideos = this.getVideosByPlaylist(playlistId, null);//
-		var nextPageToken = playlistVideos.nextPageToken();
-		if (!StringUtils.hasText(nextPageToken)) {
-			return new ArrayList<>();
-		}
-		else {
-			return this.getVideosByPlaylist(playlistId, nextPageToken).videos();
-		}
+	public Stream<Video> streamVideosByPlaylist(String playlistId, int maxPages) {
+		return this.streamVideoPagesByPlaylist(playlistId, null, maxPages).flatMap(page -> page.videos().stream());
+	}
+
+	@Override
+	public Stream<PlaylistVideos> streamVideoPagesByPlaylist(String playlistId, String pageToken, int maxPages) {
+		return PrefetchingPageIterator.stream(token -> this.getVideosByPlaylist(playlistId, token),
+				PlaylistVideos::nextPageToken, pageToken, maxPages);
 	}
 
 	@Override
 	public PlaylistVideos getVideosByPlaylist(String playlistId, String pageToken) {
 
-		var url = "https://youtube.googleapis.com/youtube/v3/playlistItems?part=snippet,contentDetails&key={key}&maxResults=500&playlistId={playlistId}"
+		var url = "https://youtube.googleapis.com/youtube/v3/playlistItems?part=snippet,contentDetails&key={key}&maxResults=50&playlistId={playlistId}"
 				+ (StringUtils.hasText(pageToken) ? "&pageToken={pt}" : "");
-		var jsonNode = this.http.get()//
-				.uri(url, Map.of("key", this.apiKey, "pt", pageToken + "", "playlistId", playlistId))//
-				.retrieve()//
-				.body(JsonNode.class);//
-
-		var items = jsonNode.get("items");
-		var list = new ArrayList<String>();
-		for (var item : items) {
-			list.add(item.get("contentDetails").get("videoId").textValue());
-		}
-		var videoCollection = getVideosByIds(list).values();//
-		var pageInfo = jsonNode.get("pageInfo");
-		var resultsPerPage = pageInfo.get("resultsPerPage").intValue();
-		var totalResults = pageInfo.get("totalResults").intValue();
-		var nextPageToken = stringOrNull(jsonNode, "nextPageToken");
-		var prevPageToken = stringOrNull(jsonNode, "prevPageToken");
-		return new PlaylistVideos(playlistId, videoCollection, nextPageToken, prevPageToken, resultsPerPage,
-				totalResults);
+		var page = this.get(YoutubeEndpoint.PLAYLIST_ITEMS, url,
+				Map.of("key", this.apiKey, "pt", pageToken + "", "playlistId", playlistId),
+				YoutubeJsonDecoder::playlistItemVideoId);
+		var videoCollection = getVideosByIds(page.items()).values();
+		return new PlaylistVideos(playlistId, videoCollection, page.nextPageToken(), page.previousPageToken(),
+				page.resultsPerPage(), page.totalResults());
 	}
 
 	@Override
 	public Collection<Video> getAllVideosByChannel(String channelId) {
-		var playlistVideos = this.getVideosByChannel(channelId, null);//
-		var nextPageToken = playlistVideos.nextPageToken();
-		if (StringUtils.hasText(nextPageToken)) {
-			return getVideosByChannel(channelId, nextPageToken).videos();
-		}
-		return new ArrayList<>();
+		return this.streamVideosByChannel(channelId, Integer.MAX_VALUE).toList();
+	}
+
+	@Override
+	public Stream<Video> streamVideosByChannel(String channelId, int maxPages) {
+		return this.streamVideoPagesByChannel(channelId, null, maxPages).flatMap(page -> page.videos().stream());
+	}
+
+	@Override
+	public Stream<ChannelVideos> streamVideoPagesByChannel(String channelId, String pageToken, int maxPages) {
+		// https://stackoverflow.com/questions/18953499/youtube-api-to-fetch-all-videos-on-a-channel/27872244#27872244
+		// reading the channel's uploads playlist costs 1 unit a page and truly returns
+		// <em>all</em> the videos, where search costs 100 units a page and gives up
+		// after about 500
+		var uploads = uploadsPlaylistId(this.getChannelById(channelId));
+		return this.streamVideoPagesByPlaylist(uploads, pageToken, maxPages)
+				.map(page -> new ChannelVideos(channelId, page.videos(), page.nextPageToken(),
+						page.previousPageToken()));
+	}
+
+	private static String uploadsPlaylistId(Channel channel) {
+		Assert.hasText(channel.uploadsPlaylistId(),
+				() -> "there is no uploads playlist for channel " + channel.channelId());
+		return channel.uploadsPlaylistId();
 	}
 
 	@Override
 	public Playlist getPlaylistById(String playlistId) {
-		var url = "https://youtube.googleapis.com/youtube/v3/playlists?part=snippet,contentDetails&id={id}&key={key}";
-		var json = this.http.get()//
-				.uri(url, Map.of("id", playlistId, "key", this.apiKey))//
-				.retrieve()//
-				.body(JsonNode.class);//
-		var first = json.get("items").get(0);
-		var snippet = first.get("snippet");
-		return new Playlist(first.get("id").textValue(), //
-				snippet.get("channelId").textValue(), //
-				buildDateFrom(snippet.get("publishedAt").textValue()), //
-				snippet.get("title").textValue(), //
-				snippet.get("description").textValue(), //
-				first.get("contentDetails").get("itemCount").intValue()//
-		);
+		var playlist = this.playlists.load(playlistId).join();
+		Assert.notNull(playlist, () -> "there was no Playlist found for id " + playlistId);
+		return playlist;
+	}
 
+	private Map<String, Playlist> fetchPlaylistsByIds(List<String> playlistIds) {
+		var url = "https://youtube.googleapis.com/youtube/v3/playlists?part=snippet,contentDetails&id={ids}&key={key}&maxResults={max}";
+		var page = this.get(YoutubeEndpoint.PLAYLISTS, url,
+				Map.of("ids", String.join(",", playlistIds), "key", this.apiKey, "max", IdBatcher.MAX_IDS_PER_REQUEST),
+				YoutubeJsonDecoder::playlist);
+		var map = new HashMap<String, Playlist>();
+		for (var playlist : page.items())
+			map.put(playlist.playlistId(), playlist);
+		return map;
 	}
 
 	@Override
 	public ChannelVideos getVideosByChannel(String channelId, String pageToken) {
 		var url = "https://www.googleapis.com/youtube/v3/search?channelId={channelId}&order=date&part=snippet&type=video&maxResults=50&key={key}"
 				+ (StringUtils.hasText(pageToken) ? "&pageToken={pt}" : "");
-		var jn = this.http.get().uri(url, Map.of("key", this.apiKey, "channelId", channelId, "pt", "" + pageToken))
-				.retrieve()//
-				.body(JsonNode.class);//
-		var nextPageToken = stringOrNull(jn, "nextPageToken");
-		var prevPageToken = stringOrNull(jn, "prevPageToken");
-		var items = jsonNodeOrNull(jn, "items");
-		Assert.isTrue(items != null, () -> "there should be 1 or more videos returned!");
-		var results = new ArrayList<String>();
-		for (var video : items) {
-			results.add(video.get("id").get("videoId").textValue());
-		}
-		log.info("there are {} results", results.size());
-		var map = this.getVideosByIds(results);
-		return new ChannelVideos(channelId, map.values(), nextPageToken, prevPageToken);
+		var page = this.get(YoutubeEndpoint.SEARCH, url,
+				Map.of("key", this.apiKey, "channelId", channelId, "pt", "" + pageToken),
+				YoutubeJsonDecoder::searchResultVideoId);
+		log.info("there are {} results", page.items().size());
+		var map = this.getVideosByIds(page.items());
+		return new ChannelVideos(channelId, map.values(), page.nextPageToken(), page.previousPageToken());
 	}
 
 	private Channel findChannel(String urlExtension, Map<String, String> params) {
@@ -223,78 +247,32 @@ class DefaultYoutubeClient implements YoutubeClient {
 		var uriVariables = new HashMap<String, String>();
 		uriVariables.put("key", this.apiKey);
 		uriVariables.putAll(params);
-		var jn = this.http//
-				.get()//
-				.uri(uri, uriVariables)//
-				.retrieve()//
-				.body(JsonNode.class);//
-		return buildChannelFromJsonNode(jn);
+		var page = this.get(YoutubeEndpoint.CHANNELS, uri, uriVariables, YoutubeJsonDecoder::channel);
+		Assert.notEmpty(page.items(), "there was no Channel found");
+		return page.items().getFirst();
 	}
 
 	@Override
 	public ChannelPlaylists getPlaylistsByChannel(String channelId, String pageToken) {
 		var url = "https://youtube.googleapis.com/youtube/v3/playlists?part=id,status,snippet,contentDetails&channelId={channelId}&maxResults=50&key={key}"
 				+ (StringUtils.hasText(pageToken) ? "&pageToken={pt}" : "");
-		var jsonNode = this.http.get()//
-				.uri(url, Map.of("channelId", channelId, "key", this.apiKey, "pt", "" + pageToken))//
-				.retrieve()//
-				.body(JsonNode.class);//
-		var tr = jsonNode.get("pageInfo").get("totalResults").intValue();
-		var nextPageToken = stringOrNull(jsonNode, "nextPageToken");
-		var prevPageToken = stringOrNull(jsonNode, "prevPageToken");
-		var list = new ArrayList<Playlist>();
-		var items = jsonNode.get("items");
-		for (var i : items)
-			list.add(buildPlaylistForJsonNode(i));
-		return new ChannelPlaylists(channelId, list, tr, prevPageToken, nextPageToken);
+		var page = this.get(YoutubeEndpoint.PLAYLISTS, url,
+				Map.of("channelId", channelId, "key", this.apiKey, "pt", "" + pageToken), YoutubeJsonDecoder::playlist);
+		return new ChannelPlaylists(channelId, page.items(), page.totalResults(), page.previousPageToken(),
+				page.nextPageToken());
 	}
 
 	@Override
 	public Collection<Playlist> getAllPlaylistsByChannel(String channelId) {
-		var channelPlaylists = this.getPlaylistsByChannel(channelId, null);//
-		var nextPageToken = channelPlaylists.nextPageToken();
-		if (!StringUtils.hasText(nextPageToken)) {
-			return new ArrayList<>();
-		} //
-		else {
-			return this.getPlaylistsByChannel(channelId, nextPageToken).playlists();
-		}
+		return this.streamPlaylistsByChannel(channelId, Integer.MAX_VALUE).toList();
 	}
 
-	private Channel buildChannelFromJsonNode(JsonNode jsonNode) {
-		var items = jsonNode.get("items");
-		for (var i : items) {
-			Assert.isTrue(i.get("kind").textValue().equals("youtube#channel"), "the item is a YouTube channel");
-			var id = i.get("id").textValue();
-			var title = i.get("snippet").get("title").textValue();
-			var description = i.get("snippet").get("description").textValue();
-			var publishedAt = i.get("snippet").get("publishedAt").textValue();
-
-			return new Channel(id, title, description, buildDateFrom(publishedAt));
-		}
-		throw new RuntimeException("we should never reach this point! there was no Channel found");
-	}
-
-	static class JsonFormattingUtils {
-
-		static int numberOrZero(JsonNode node, String propertyName) {
-			var json = jsonNodeOrNull(node, propertyName);
-			return json != null ? Integer.parseInt(json.textValue()) : 0;
-		}
-
-		static Date buildDateFrom(String isoDate) {
-			return Date.from(Instant.parse(isoDate));
-		}
-
-		static JsonNode jsonNodeOrNull(JsonNode node, String propertyName) {
-			return node.has(propertyName) ? node.get(propertyName) : null;
-		}
-
-		static String stringOrNull(JsonNode jsonNode, String propertyName) {
-			var res = jsonNodeOrNull(jsonNode, propertyName);
-			return res != null ? res.textValue() : null;
-		}
-
+	@Override
+	public Stream<Playlist> streamPlaylistsByChannel(String channelId, int maxPages) {
+		return PrefetchingPageIterator
+				.stream(pageToken -> this.getPlaylistsByChannel(channelId, pageToken), ChannelPlaylists::nextPageToken,
+						maxPages)
+				.flatMap(page -> page.playlists().stream());
 	}
 
 }
@@ -0,0 +1,218 @@
+package com.joshlong.videos.youtube.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A disk-backed cache for the YouTube Data API's {@code GET} responses. Most of the
+ * channel and playlist metadata doesn't change between ingest runs, and the API hands
+ * back an {@code ETag} with every response, so we remember the last body for each URI
+ * and send its {@code ETag} in an {@code If-None-Match} header. When the API answers
+ * {@code 304 Not Modified} we replay the body from disk instead.
+ * <p>
+ * The cache evicts the least recently used entries once it grows past
+ * {@code maxSizeInBytes}.
+ *
+ * @author Josh Long
+ */
+class EtagCachingInterceptor implements ClientHttpRequestInterceptor {
+
+	private static final String SUFFIX = ".etag-cache";
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	private final AtomicLong size = new AtomicLong();
+
+	private final File directory;
+
+	private final long maxSizeInBytes;
+
+	EtagCachingInterceptor(File directory, long maxSizeInBytes) {
+		this.directory = directory;
+		this.maxSizeInBytes = maxSizeInBytes;
+		if (!this.directory.exists() && !this.directory.mkdirs())
+			throw new IllegalStateException("could not create the cache directory " + directory.getAbsolutePath());
+		for (var file : this.entries())
+			this.size.addAndGet(file.length());
+		this.log.info("the YouTube response cache in {} holds {} bytes", directory.getAbsolutePath(), this.size.get());
+	}
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+
+		if (request.getMethod() != HttpMethod.GET)
+			return execution.execute(request, body);
+
+		var file = new File(this.directory, key(request.getURI().toString()) + SUFFIX);
+		var cached = this.read(file);
+		if (cached != null)
+			request.getHeaders().setIfNoneMatch(cached.etag());
+
+		var response = execution.execute(request, body);
+
+		if (cached != null && response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+			response.close();
+			this.touch(file);
+			this.log.debug("{} has not been modified, replaying it from the cache", request.getURI().getPath());
+			return cached.toResponse();
+		}
+
+		var etag = response.getHeaders().getETag();
+		if (!response.getStatusCode().is2xxSuccessful() || !StringUtils.hasText(etag))
+			return response;
+
+		try (response) {
+			var entry = new Entry(etag, response.getHeaders().getContentType(), response.getBody().readAllBytes());
+			this.write(file, entry);
+			return entry.toResponse();
+		}
+	}
+
+	private Entry read(File file) {
+		if (!file.exists())
+			return null;
+		try (var in = new DataInputStream(Files.newInputStream(file.toPath()))) {
+			var etag = in.readUTF();
+			var contentType = in.readUTF();
+			var bytes = in.readAllBytes();
+			return new Entry(etag, StringUtils.hasText(contentType) ? MediaType.parseMediaType(contentType) : null,
+					bytes);
+		} //
+		catch (IOException e) {
+			this.log.warn("could not read the cache entry {}, ignoring it", file.getAbsolutePath(), e);
+			return null;
+		}
+	}
+
+	private void write(File file, Entry entry) throws IOException {
+		var bytes = new ByteArrayOutputStream(entry.body().length + 256);
+		try (var out = new DataOutputStream(bytes)) {
+			out.writeUTF(entry.etag());
+			out.writeUTF(entry.contentType() == null ? "" : entry.contentType().toString());
+			out.write(entry.body());
+		}
+		var previous = file.exists() ? file.length() : 0;
+		var temp = File.createTempFile("entry", ".tmp", this.directory);
+		Files.write(temp.toPath(), bytes.toByteArray());
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		if (this.size.addAndGet(bytes.size() - previous) > this.maxSizeInBytes)
+			this.evict();
+	}
+
+	private void touch(File file) {
+		try {
+			Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+		} //
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void evict() {
+		this.evictionLock.lock();
+		try {
+			var files = this.entries();
+			Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+			for (var file : files) {
+				if (this.size.get() <= this.maxSizeInBytes)
+					break;
+				var length = file.length();
+				if (file.delete())
+					this.size.addAndGet(-length);
+			}
+		} //
+		finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+	private File[] entries() {
+		var files = this.directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+		return files == null ? new File[0] : files;
+	}
+
+	private static String key(String uri) {
+		try {
+			var digest = MessageDigest.getInstance("SHA-256").digest(uri.getBytes(StandardCharsets.UTF_8));
+			return HexFormat.of().formatHex(digest);
+		} //
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private record Entry(String etag, MediaType contentType, byte[] body) {
+
+		ClientHttpResponse toResponse() {
+			var headers = new HttpHeaders();
+			headers.setETag(this.etag);
+			if (this.contentType != null)
+				headers.setContentType(this.contentType);
+			headers.setContentLength(this.body.length);
+			return new CachedResponse(headers, this.body);
+		}
+
+	}
+
+	private record CachedResponse(HttpHeaders headers, byte[] body) implements ClientHttpResponse {
+
+		@Override
+		public HttpStatusCode getStatusCode() {
+			return HttpStatus.OK;
+		}
+
+		@Override
+		public String getStatusText() {
+			return HttpStatus.OK.getReasonPhrase();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return this.headers;
+		}
+
+		@Override
+		public InputStream getBody() {
+			return new ByteArrayInputStream(this.body);
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+}
@@ -0,0 +1,141 @@
+package com.joshlong.videos.youtube.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A DataLoader-style batcher for the YouTube Data API endpoints that accept a
+ * comma-separated list of ids ({@code videos}, {@code channels}, {@code playlists}).
+ * Lookups from concurrent callers are collected for a short window, or until there are
+ * {@link #MAX_IDS_PER_REQUEST} of them, and then sent as a single request. Each caller
+ * gets a future that's completed with its own result, or with {@code null} if the API
+ * didn't return anything for that id.
+ *
+ * @param <T> the type of the things being looked up
+ * @author Josh Long
+ */
+class IdBatcher<T> {
+
+	/**
+	 * the YouTube Data API won't take more than this many ids in a single request
+	 */
+	static final int MAX_IDS_PER_REQUEST = 50;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Map<String, CompletableFuture<T>> pending = new LinkedHashMap<>();
+
+	private final Function<List<String>, Map<String, T>> loader;
+
+	private final Duration window;
+
+	private boolean scheduled;
+
+	/**
+	 * @param loader loads up to {@link #MAX_IDS_PER_REQUEST} ids in a single request,
+	 * returning whatever it found, keyed by id
+	 * @param window how long to wait for other callers before sending a partial batch
+	 */
+	IdBatcher(Function<List<String>, Map<String, T>> loader, Duration window) {
+		this.loader = loader;
+		this.window = window;
+	}
+
+	CompletableFuture<T> load(String id) {
+		this.lock.lock();
+		try {
+			var existing = this.pending.get(id);
+			if (existing != null)
+				return existing;
+			var future = new CompletableFuture<T>();
+			this.pending.put(id, future);
+			if (this.pending.size() >= MAX_IDS_PER_REQUEST) {
+				var batch = this.drain();
+				Thread.startVirtualThread(() -> this.dispatch(batch));
+			}
+			else if (!this.scheduled) {
+				this.scheduled = true;
+				Thread.startVirtualThread(this::dispatchAfterWindow);
+			}
+			return future;
+		} //
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * loads all the ids in as few requests as possible.
+	 * @return everything that was found, keyed by id
+	 */
+	Map<String, T> loadAll(List<String> ids) {
+		var futures = new LinkedHashMap<String, CompletableFuture<T>>();
+		for (var id : ids)
+			futures.put(id, this.load(id));
+		var results = new LinkedHashMap<String, T>();
+		try {
+			futures.forEach((id, future) -> {
+				var value = future.join();
+				if (value != null)
+					results.put(id, value);
+			});
+		} //
+		catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException)
+				throw runtimeException;
+			throw e;
+		}
+		return results;
+	}
+
+	private void dispatchAfterWindow() {
+		try {
+			Thread.sleep(this.window);
+		} //
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		Map<String, CompletableFuture<T>> batch;
+		this.lock.lock();
+		try {
+			this.scheduled = false;
+			batch = this.drain();
+		} //
+		finally {
+			this.lock.unlock();
+		}
+		if (!batch.isEmpty())
+			this.dispatch(batch);
+	}
+
+	private Map<String, CompletableFuture<T>> drain() {
+		var batch = new LinkedHashMap<>(this.pending);
+		this.pending.clear();
+		return batch;
+	}
+
+	private void dispatch(Map<String, CompletableFuture<T>> batch) {
+		try {
+			var ids = new ArrayList<>(batch.keySet());
+			this.log.debug("loading {} ids in a single request", ids.size());
+			var results = this.loader.apply(ids);
+			batch.forEach((id, future) -> future.complete(results.get(id)));
+		} //
+		catch (Throwable throwable) {
+			batch.values().forEach(future -> future.completeExceptionally(throwable));
+		}
+	}
+
+}
@@ -13,5 +13,5 @@ import java.util.Collection;
  * @param totalResults
  */
 public record PlaylistVideos(String playlistId, Collection<Video> videos, String nextPageToken,
-		String previousPageToken, int resultsPerPage, int totalResults) {
+		String previousPageToken, int resultsPerPage, int totalResults) implements VideoPage {
 }
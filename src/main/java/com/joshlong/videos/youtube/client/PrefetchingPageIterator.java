@@ -0,0 +1,134 @@
+package com.joshlong.videos.youtube.client;
+
+import org.springframework.util.StringUtils;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Walks the YouTube Data API's {@code nextPageToken} pagination to the end (or to
+ * {@code maxPages}), lazily. Nothing is fetched until the first page is asked for, and
+ * while the caller is busy with page N, page N+1 is already being fetched on a virtual
+ * thread. Closing the iterator, or the {@link #stream stream} around it, interrupts that
+ * fetch, so a caller that stops early should close the stream, lest it pay for a page it
+ * never reads.
+ *
+ * @param <P> the type of a single page of results
+ * @author Josh Long
+ */
+class PrefetchingPageIterator<P> implements Iterator<P>, AutoCloseable {
+
+	private static final Executor VIRTUAL_THREADS = Thread::startVirtualThread;
+
+	private final Function<String, P> fetcher;
+
+	private final Function<P, String> nextPageToken;
+
+	private final int maxPages;
+
+	private final String firstPageToken;
+
+	private FutureTask<P> next;
+
+	private boolean started;
+
+	private boolean closed;
+
+	private int pages;
+
+	/**
+	 * @param fetcher fetches the page for a given page token. The token is {@code null}
+	 * for the first page.
+	 * @param nextPageToken extracts the token for the following page, if there is one,
+	 * from a page
+	 * @param firstPageToken the token of the page at which to start, or {@code null} to
+	 * start at the beginning
+	 * @param maxPages stop after this many pages, even if there are more
+	 */
+	PrefetchingPageIterator(Function<String, P> fetcher, Function<P, String> nextPageToken, String firstPageToken,
+			int maxPages) {
+		this.fetcher = fetcher;
+		this.nextPageToken = nextPageToken;
+		this.firstPageToken = firstPageToken;
+		this.maxPages = maxPages;
+	}
+
+	static <P> Stream<P> stream(Function<String, P> fetcher, Function<P, String> nextPageToken, int maxPages) {
+		return stream(fetcher, nextPageToken, null, maxPages);
+	}
+
+	static <P> Stream<P> stream(Function<String, P> fetcher, Function<P, String> nextPageToken,
+			String firstPageToken, int maxPages) {
+		var iterator = new PrefetchingPageIterator<>(fetcher, nextPageToken, firstPageToken, maxPages);
+		var spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, false).onClose(iterator::close);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (!this.started && !this.closed) {
+			this.started = true;
+			if (this.maxPages > 0)
+				this.fetch(this.firstPageToken);
+		}
+		return this.next != null;
+	}
+
+	@Override
+	public P next() {
+		if (!this.hasNext())
+			throw new NoSuchElementException();
+		var pending = this.next;
+		this.next = null;
+		var page = this.await(pending);
+		var token = this.nextPageToken.apply(page);
+		if (StringUtils.hasText(token) && this.pages < this.maxPages)
+			this.fetch(token);
+		return page;
+	}
+
+	/**
+	 * interrupts the fetch of the next page, if there is one, and stops the iteration.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		if (this.next != null) {
+			this.next.cancel(true);
+			this.next = null;
+		}
+	}
+
+	private void fetch(String pageToken) {
+		this.pages += 1;
+		this.next = new FutureTask<>(() -> this.fetcher.apply(pageToken));
+		VIRTUAL_THREADS.execute(this.next);
+	}
+
+	private P await(FutureTask<P> future) {
+		try {
+			return future.get();
+		} //
+		catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while waiting for the next page", e);
+		} //
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException)
+				throw runtimeException;
+			if (e.getCause() instanceof Error error)
+				throw error;
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+}
@@ -0,0 +1,16 @@
+package com.joshlong.videos.youtube.client;
+
+/**
+ * thrown instead of making a request to the YouTube Data API that would take us over
+ * the day's quota, or, for low priority requests, into the part of it that's reserved
+ * for everything else.
+ *
+ * @author Josh Long
+ */
+public class QuotaExceededException extends RuntimeException {
+
+	QuotaExceededException(String message) {
+		super(message);
+	}
+
+}
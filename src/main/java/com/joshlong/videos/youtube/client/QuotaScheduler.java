@@ -0,0 +1,188 @@
+package com.joshlong.videos.youtube.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.util.Assert;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides when, and whether, a request to the YouTube Data API may go out.
+ * <ul>
+ * <li>Requests are rate limited with a token bucket.</li>
+ * <li>When requests are waiting for a token, {@link YoutubeEndpoint.Priority#HIGH high
+ * priority} ones go first, so that cheap lookups aren't stuck behind a queue of 100 unit
+ * searches.</li>
+ * <li>Every request is charged against a daily budget of quota units, which YouTube
+ * resets at midnight Pacific time. A request that would go over the budget fails with a
+ * {@link QuotaExceededException}, and so does a low priority request that would eat
+ * into the reserve we keep for the high priority ones.</li>
+ * </ul>
+ * The units spent on each endpoint, and the units left for the day, are published as
+ * metrics.
+ * <p>
+ * The budget only knows about requests made by this process since it started.
+ *
+ * @author Josh Long
+ */
+class QuotaScheduler {
+
+	private static final ZoneId QUOTA_ZONE = ZoneId.of("America/Los_Angeles");
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition changed = this.lock.newCondition();
+
+	private final PriorityQueue<Ticket> waiting = new PriorityQueue<>(
+			Comparator.comparing(Ticket::priority).thenComparingLong(Ticket::sequence));
+
+	private final Map<YoutubeEndpoint, Counter> counters = new EnumMap<>(YoutubeEndpoint.class);
+
+	private final long dailyUnits;
+
+	private final long lowPriorityReserve;
+
+	private final double tokensPerNano;
+
+	private final int burst;
+
+	private final Clock clock;
+
+	private double tokens;
+
+	private long refilledAt;
+
+	private long sequence;
+
+	private long used;
+
+	private LocalDate day;
+
+	private record Ticket(YoutubeEndpoint.Priority priority, long sequence) {
+	}
+
+	/**
+	 * @param dailyUnits how many quota units we may spend each day
+	 * @param lowPriorityReserve how many of those units low priority requests may not
+	 * touch
+	 * @param requestsPerSecond how many requests, on average, may go out each second
+	 * @param burst how many requests may go out at once after a quiet spell
+	 */
+	QuotaScheduler(long dailyUnits, long lowPriorityReserve, double requestsPerSecond, int burst,
+			MeterRegistry registry, Clock clock) {
+		Assert.isTrue(dailyUnits > 0, "the daily budget must be positive");
+		Assert.isTrue(requestsPerSecond > 0, "the request rate must be positive");
+		Assert.isTrue(burst > 0, "the burst must be positive");
+		this.dailyUnits = dailyUnits;
+		this.lowPriorityReserve = lowPriorityReserve;
+		this.tokensPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.burst = burst;
+		this.clock = clock;
+		this.tokens = burst;
+		this.refilledAt = System.nanoTime();
+		this.day = LocalDate.now(clock.withZone(QUOTA_ZONE));
+		for (var endpoint : YoutubeEndpoint.values())
+			this.counters.put(endpoint,
+					Counter.builder("youtube.quota.units")
+							.description("quota units spent on the YouTube Data API")
+							.tag("endpoint", endpoint.name().toLowerCase(Locale.ROOT))
+							.register(registry));
+		Gauge.builder("youtube.quota.remaining", this, QuotaScheduler::remaining)
+				.description("quota units left for today")
+				.register(registry);
+	}
+
+	/**
+	 * waits until the request may go out, and charges it against the day's budget.
+	 * @throws QuotaExceededException if there's not enough quota left for it
+	 */
+	void acquire(YoutubeEndpoint endpoint) {
+		this.lock.lock();
+		try {
+			this.check(endpoint);
+			var ticket = new Ticket(endpoint.priority(), this.sequence++);
+			this.waiting.add(ticket);
+			try {
+				while (!this.take(ticket))
+					this.changed.awaitNanos(this.nanosUntilNextToken());
+			} //
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while waiting to call " + endpoint.path(), e);
+			} //
+			finally {
+				this.waiting.remove(ticket);
+				this.changed.signalAll();
+			}
+			// somebody else might have spent what was left while we were waiting
+			this.check(endpoint);
+			this.used += endpoint.units();
+			this.counters.get(endpoint).increment(endpoint.units());
+		} //
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @return how many quota units are left for today
+	 */
+	long remaining() {
+		this.lock.lock();
+		try {
+			this.rollOver();
+			return this.dailyUnits - this.used;
+		} //
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	private void check(YoutubeEndpoint endpoint) {
+		this.rollOver();
+		var limit = endpoint.priority() == YoutubeEndpoint.Priority.LOW ? this.dailyUnits - this.lowPriorityReserve
+				: this.dailyUnits;
+		if (this.used + endpoint.units() > limit)
+			throw new QuotaExceededException("calling " + endpoint.path() + " would cost " + endpoint.units()
+					+ " units, but only " + Math.max(0, limit - this.used) + " of today's "
+					+ endpoint.priority().name().toLowerCase(Locale.ROOT) + " priority quota units are left");
+	}
+
+	private boolean take(Ticket ticket) {
+		this.refill();
+		if (this.waiting.peek() != ticket || this.tokens < 1)
+			return false;
+		this.tokens -= 1;
+		return true;
+	}
+
+	private void refill() {
+		var now = System.nanoTime();
+		this.tokens = Math.min(this.burst, this.tokens + (now - this.refilledAt) * this.tokensPerNano);
+		this.refilledAt = now;
+	}
+
+	private long nanosUntilNextToken() {
+		return Math.max(1, (long) Math.ceil((1 - this.tokens) / this.tokensPerNano));
+	}
+
+	private void rollOver() {
+		var today = LocalDate.now(this.clock.withZone(QUOTA_ZONE));
+		if (!today.equals(this.day)) {
+			this.day = today;
+			this.used = 0;
+		}
+	}
+
+}
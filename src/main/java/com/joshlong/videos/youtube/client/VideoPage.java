@@ -0,0 +1,16 @@
+package com.joshlong.videos.youtube.client;
+
+import java.util.Collection;
+
+/**
+ * A single page of {@link Video}s, and the token for the page after it, if there is one.
+ *
+ * @author Josh Long
+ */
+public interface VideoPage {
+
+	Collection<Video> videos();
+
+	String nextPageToken();
+
+}
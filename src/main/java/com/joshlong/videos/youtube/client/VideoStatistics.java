@@ -0,0 +1,8 @@
+package com.joshlong.videos.youtube.client;
+
+/**
+ * just the counters for a {@link Video}, as returned by a {@code part=statistics}
+ * request, which costs a fraction of what re-reading the whole {@code snippet} does.
+ */
+public record VideoStatistics(String videoId, int viewCount, int likeCount, int favoriteCount, int commentCount) {
+}
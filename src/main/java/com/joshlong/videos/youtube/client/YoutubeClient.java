@@ -5,6 +5,7 @@ import org.springframework.lang.Nullable;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * A simple YouTube client for the APIs
@@ -45,6 +46,30 @@ public interface YoutubeClient {
 	 */
 	Collection<Video> getAllVideosByPlaylist(String playlistId);
 
+	/**
+	 * Lazily walks every page of {@link Video}s in a {@link Playlist}. Pages are fetched
+	 * as the stream is consumed, with the next page fetched in the background while the
+	 * current one is being processed. Use {@link Stream#limit(long)} to cap the number
+	 * of {@link Video}s, and close the stream if you stop before the end, so that the
+	 * fetch of the next page is cancelled.
+	 * @param playlistId the id of the {@link Playlist} in which to find {@link Video}s
+	 * @param maxPages the maximum number of pages to fetch
+	 * @return a lazy stream of the {@link Video}s in the {@link Playlist}
+	 */
+	Stream<Video> streamVideosByPlaylist(String playlistId, int maxPages);
+
+	/**
+	 * Like {@link #streamVideosByPlaylist(String, int)}, but one page at a time, so that
+	 * callers can note each page's {@code nextPageToken} and later pick up where they
+	 * left off.
+	 * @param playlistId the id of the {@link Playlist} in which to find {@link Video}s
+	 * @param pageToken the token of the page at which to start, or {@code null} for the
+	 * first page
+	 * @param maxPages the maximum number of pages to fetch
+	 * @return a lazy stream of pages of {@link Video}s
+	 */
+	Stream<PlaylistVideos> streamVideoPagesByPlaylist(String playlistId, @Nullable String pageToken, int maxPages);
+
 	/**
 	 * Return the playlists
 	 * @param channelId the ID of the channel that we want to query
@@ -62,6 +87,17 @@ public interface YoutubeClient {
 	 */
 	Collection<Playlist> getAllPlaylistsByChannel(String channelId);
 
+	/**
+	 * Lazily walks every page of {@link Playlist}s for a given {@link Channel}, fetching
+	 * the next page in the background while the current one is being processed. Close
+	 * the stream if you stop before the end, so that the fetch of the next page is
+	 * cancelled.
+	 * @param channelId the id of the channel whose playlists we want
+	 * @param maxPages the maximum number of pages to fetch
+	 * @return a lazy stream of {@link Playlist}s
+	 */
+	Stream<Playlist> streamPlaylistsByChannel(String channelId, int maxPages);
+
 	/**
 	 * Finds a Youtube channel by the username that created it.
 	 * @param username a username, like {@code SpringDeveloper}
@@ -86,6 +122,15 @@ public interface YoutubeClient {
 	 */
 	Map<String, Video> getVideosByIds(List<String> videoIds);
 
+	/**
+	 * Returns only the statistics (views, likes, etc.) for a collection of videoIds.
+	 * This is much cheaper than {@link #getVideosByIds(List)} when all we want is to
+	 * refresh the counters of {@link Video}s we already know about.
+	 * @param videoIds the ids of the {@link Video}s whose statistics we want
+	 * @return a map of videoIds to {@link VideoStatistics}
+	 */
+	Map<String, VideoStatistics> getVideoStatisticsByIds(List<String> videoIds);
+
 	/**
 	 * This in turn delegates to {@link #getVideosByIds(List)} but for a single
 	 * {@link Video record}.
@@ -96,7 +141,10 @@ public interface YoutubeClient {
 
 	/**
 	 * Returns all the videos associated with a channel, with no indication of the
-	 * playlists to which it belongs.
+	 * playlists to which it belongs. This goes through the {@code search} endpoint,
+	 * which costs 100 quota units a page and stops after about 500 results, so prefer
+	 * {@link #streamVideosByChannel(String, int)}, which reads the channel's uploads
+	 * playlist instead.
 	 * @param channelId the id of the channel
 	 * @param pageToken the page token for navigation and pagination
 	 * @return an aggregate type {@link ChannelVideos} containing the results and
@@ -111,6 +159,30 @@ public interface YoutubeClient {
 	 */
 	Collection<Video> getAllVideosByChannel(String channelId);
 
+	/**
+	 * Lazily walks every page of {@link Video}s for a given {@link Channel}, fetching the
+	 * next page in the background while the current one is being processed. The videos
+	 * come from the channel's {@link Channel#uploadsPlaylistId() uploads playlist},
+	 * most recently added first. Close the stream if you stop before the end, so that
+	 * the fetch of the next page is cancelled.
+	 * @param channelId the id of the channel
+	 * @param maxPages the maximum number of pages to fetch
+	 * @return a lazy stream of {@link Video}s
+	 */
+	Stream<Video> streamVideosByChannel(String channelId, int maxPages);
+
+	/**
+	 * Like {@link #streamVideosByChannel(String, int)}, but one page at a time, so that
+	 * callers can note each page's {@code nextPageToken} and later pick up where they
+	 * left off.
+	 * @param channelId the id of the channel
+	 * @param pageToken the token of the page at which to start, or {@code null} for the
+	 * first page
+	 * @param maxPages the maximum number of pages to fetch
+	 * @return a lazy stream of pages of {@link Video}s
+	 */
+	Stream<ChannelVideos> streamVideoPagesByChannel(String channelId, @Nullable String pageToken, int maxPages);
+
 	/**
 	 * Returns a {@link Playlist} by its ID from the Youtube Data API
 	 * @param playlistId the ID of the playlist to be retreived
@@ -1,6 +1,7 @@
 package com.joshlong.videos.youtube.client;
 
 import com.joshlong.videos.JobProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.aot.hint.MemberCategory;
 import org.springframework.aot.hint.RuntimeHints;
 import org.springframework.aot.hint.RuntimeHintsRegistrar;
@@ -9,6 +10,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.web.client.RestClient;
 
+import java.time.Clock;
 import java.util.Set;
 
 @Configuration
@@ -21,14 +23,25 @@ class YoutubeClientConfiguration {
 		public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
 			var mcs = MemberCategory.values();
 			Set.of(Video.class, Playlist.class, PlaylistVideos.class, Channel.class, ChannelVideos.class,
-					ChannelPlaylists.class).forEach(c -> hints.reflection().registerType(c, mcs));
+					ChannelPlaylists.class, VideoStatistics.class)
+					.forEach(c -> hints.reflection().registerType(c, mcs));
 		}
 
 	}
 
 	@Bean
-	YoutubeClient youtubeClient(RestClient http, JobProperties properties) {
-		return new DefaultYoutubeClient(http, properties.youtube().apiKey());
+	YoutubeClient youtubeClient(RestClient http, JobProperties properties, MeterRegistry registry) {
+		var youtube = properties.youtube();
+		var cache = youtube.cache();
+		var youtubeHttp = http;
+		if (cache.enabled() && cache.directory() != null)
+			youtubeHttp = http.mutate()
+					.requestInterceptor(new EtagCachingInterceptor(cache.directory(), cache.maxSize().toBytes()))
+					.build();
+		var quota = youtube.quota();
+		var scheduler = new QuotaScheduler(quota.dailyUnits(), quota.lowPriorityReserve(), quota.requestsPerSecond(),
+				quota.burst(), registry, Clock.systemUTC());
+		return new DefaultYoutubeClient(youtubeHttp, youtube.apiKey(), youtube.maxConcurrentRequests(), scheduler);
 	}
 
 }
@@ -0,0 +1,59 @@
+package com.joshlong.videos.youtube.client;
+
+/**
+ * The YouTube Data API endpoints we call, what each call costs against the daily quota
+ * and how badly we need it. See
+ * <a href="https://developers.google.com/youtube/v3/determine_quota_cost">the quota
+ * calculator</a>.
+ *
+ * @author Josh Long
+ */
+enum YoutubeEndpoint {
+
+	CHANNELS("channels", 1, Priority.HIGH),
+
+	PLAYLISTS("playlists", 1, Priority.HIGH),
+
+	PLAYLIST_ITEMS("playlistItems", 1, Priority.HIGH),
+
+	VIDEOS("videos", 1, Priority.HIGH),
+
+	/**
+	 * {@code videos?part=statistics}: only ever used to refresh counters we already
+	 * have, so it's the first thing to go when we're running out of quota
+	 */
+	VIDEO_STATISTICS("videos", 1, Priority.LOW),
+
+	SEARCH("search", 100, Priority.LOW);
+
+	enum Priority {
+
+		HIGH, LOW
+
+	}
+
+	private final String path;
+
+	private final int units;
+
+	private final Priority priority;
+
+	YoutubeEndpoint(String path, int units, Priority priority) {
+		this.path = path;
+		this.units = units;
+		this.priority = priority;
+	}
+
+	String path() {
+		return this.path;
+	}
+
+	int units() {
+		return this.units;
+	}
+
+	Priority priority() {
+		return this.priority;
+	}
+
+}
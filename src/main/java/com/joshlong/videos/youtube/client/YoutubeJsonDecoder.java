@@ -0,0 +1,375 @@
+package com.joshlong.videos.youtube.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.joshlong.utils.UrlUtils;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Decodes the YouTube Data API's responses a token at a time, straight into our records,
+ * without first building a tree of {@link com.fasterxml.jackson.databind.JsonNode
+ * nodes} for each response only to throw it away. Fields we don't use are skipped, and
+ * the counters, which YouTube sends as strings, are parsed by Jackson as they're read.
+ *
+ * @author Josh Long
+ */
+class YoutubeJsonDecoder {
+
+	private final JsonFactory factory;
+
+	YoutubeJsonDecoder(JsonFactory factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * one page of a response: the decoded {@code items}, and the {@code pageInfo} and
+	 * page tokens around them.
+	 */
+	record Page<T>(List<T> items, String nextPageToken, String previousPageToken, int totalResults,
+			int resultsPerPage) {
+	}
+
+	/**
+	 * reads one item. The parser is on the item's {@link JsonToken#START_OBJECT}, and
+	 * must be left on its {@link JsonToken#END_OBJECT}.
+	 */
+	@FunctionalInterface
+	interface ItemReader<T> {
+
+		T read(JsonParser parser) throws IOException;
+
+	}
+
+	@FunctionalInterface
+	private interface FieldReader {
+
+		/**
+		 * reads the value of the named field, on which the parser is positioned.
+		 * @return {@code false} if the field was of no interest, and should be skipped
+		 */
+		boolean read(String name) throws IOException;
+
+	}
+
+	<T> Page<T> page(InputStream json, ItemReader<T> reader) throws IOException {
+		try (var parser = this.factory.createParser(json)) {
+			parser.nextToken();
+			var items = new ArrayList<T>();
+			var page = new Object() {
+
+				String next;
+
+				String previous;
+
+				int total;
+
+				int perPage;
+
+			};
+			fields(parser, name -> switch (name) {
+				case "items" -> {
+					if (parser.currentToken() == JsonToken.START_ARRAY)
+						while (parser.nextToken() == JsonToken.START_OBJECT) {
+							var item = reader.read(parser);
+							if (item != null)
+								items.add(item);
+						}
+					else
+						parser.skipChildren();
+					yield true;
+				}
+				case "nextPageToken" -> {
+					page.next = parser.getValueAsString();
+					yield true;
+				}
+				case "prevPageToken" -> {
+					page.previous = parser.getValueAsString();
+					yield true;
+				}
+				case "pageInfo" -> {
+					fields(parser, info -> switch (info) {
+						case "totalResults" -> {
+							page.total = parser.getValueAsInt();
+							yield true;
+						}
+						case "resultsPerPage" -> {
+							page.perPage = parser.getValueAsInt();
+							yield true;
+						}
+						default -> false;
+					});
+					yield true;
+				}
+				default -> false;
+			});
+			return new Page<>(items, page.next, page.previous, page.total, page.perPage);
+		}
+	}
+
+	static Video video(JsonParser parser) throws IOException {
+		var video = new Object() {
+
+			String id, channelId, title, description, liveBroadcastContent;
+
+			Date publishedAt;
+
+			URL thumbnail;
+
+			final List<String> tags = new ArrayList<>();
+
+			int categoryId, viewCount, likeCount, favoriteCount, commentCount;
+
+		};
+		fields(parser, name -> switch (name) {
+			case "id" -> {
+				video.id = parser.getValueAsString();
+				yield true;
+			}
+			case "snippet" -> {
+				fields(parser, field -> switch (field) {
+					case "channelId" -> {
+						video.channelId = parser.getValueAsString();
+						yield true;
+					}
+					case "publishedAt" -> {
+						video.publishedAt = date(parser.getValueAsString());
+						yield true;
+					}
+					case "title" -> {
+						video.title = parser.getValueAsString();
+						yield true;
+					}
+					case "description" -> {
+						video.description = parser.getValueAsString();
+						yield true;
+					}
+					case "thumbnails" -> {
+						video.thumbnail = defaultThumbnail(parser);
+						yield true;
+					}
+					case "tags" -> {
+						if (parser.currentToken() == JsonToken.START_ARRAY)
+							while (parser.nextToken() != JsonToken.END_ARRAY)
+								video.tags.add(parser.getValueAsString());
+						yield true;
+					}
+					case "liveBroadcastContent" -> {
+						video.liveBroadcastContent = parser.getValueAsString();
+						yield true;
+					}
+					case "categoryId" -> {
+						video.categoryId = parser.getValueAsInt();
+						yield true;
+					}
+					default -> false;
+				});
+				yield true;
+			}
+			case "statistics" -> {
+				fields(parser, field -> switch (field) {
+					case "viewCount" -> {
+						video.viewCount = parser.getValueAsInt();
+						yield true;
+					}
+					case "likeCount" -> {
+						video.likeCount = parser.getValueAsInt();
+						yield true;
+					}
+					case "favoriteCount" -> {
+						video.favoriteCount = parser.getValueAsInt();
+						yield true;
+					}
+					case "commentCount" -> {
+						video.commentCount = parser.getValueAsInt();
+						yield true;
+					}
+					default -> false;
+				});
+				yield true;
+			}
+			default -> false;
+		});
+		var upcoming = video.liveBroadcastContent != null && video.liveBroadcastContent.contains("upcoming");
+		return new Video(video.id, video.title, video.description, video.publishedAt, video.thumbnail, video.tags,
+				video.categoryId, video.viewCount, video.likeCount, video.favoriteCount, video.commentCount,
+				video.channelId, upcoming);
+	}
+
+	static VideoStatistics videoStatistics(JsonParser parser) throws IOException {
+		var video = video(parser);
+		return new VideoStatistics(video.videoId(), video.viewCount(), video.likeCount(), video.favoriteCount(),
+				video.commentCount());
+	}
+
+	static Channel channel(JsonParser parser) throws IOException {
+		var channel = new Object() {
+
+			String kind, id, title, description, uploads;
+
+			Date publishedAt;
+
+		};
+		fields(parser, name -> switch (name) {
+			case "kind" -> {
+				channel.kind = parser.getValueAsString();
+				yield true;
+			}
+			case "id" -> {
+				channel.id = parser.getValueAsString();
+				yield true;
+			}
+			case "snippet" -> {
+				fields(parser, field -> switch (field) {
+					case "title" -> {
+						channel.title = parser.getValueAsString();
+						yield true;
+					}
+					case "description" -> {
+						channel.description = parser.getValueAsString();
+						yield true;
+					}
+					case "publishedAt" -> {
+						channel.publishedAt = date(parser.getValueAsString());
+						yield true;
+					}
+					default -> false;
+				});
+				yield true;
+			}
+			case "contentDetails" -> {
+				fields(parser, field -> field.equals("relatedPlaylists") && fields(parser, playlist -> {
+					if (!playlist.equals("uploads"))
+						return false;
+					channel.uploads = parser.getValueAsString();
+					return true;
+				}));
+				yield true;
+			}
+			default -> false;
+		});
+		Assert.isTrue("youtube#channel".equals(channel.kind), "the item is a YouTube channel");
+		return new Channel(channel.id, channel.title, channel.description, channel.publishedAt, channel.uploads);
+	}
+
+	static Playlist playlist(JsonParser parser) throws IOException {
+		var playlist = new Object() {
+
+			String id, channelId, title, description;
+
+			Date publishedAt;
+
+			int itemCount;
+
+		};
+		fields(parser, name -> switch (name) {
+			case "id" -> {
+				playlist.id = parser.getValueAsString();
+				yield true;
+			}
+			case "snippet" -> {
+				fields(parser, field -> switch (field) {
+					case "channelId" -> {
+						playlist.channelId = parser.getValueAsString();
+						yield true;
+					}
+					case "title" -> {
+						playlist.title = parser.getValueAsString();
+						yield true;
+					}
+					case "description" -> {
+						playlist.description = parser.getValueAsString();
+						yield true;
+					}
+					case "publishedAt" -> {
+						playlist.publishedAt = date(parser.getValueAsString());
+						yield true;
+					}
+					default -> false;
+				});
+				yield true;
+			}
+			case "contentDetails" -> {
+				fields(parser, field -> {
+					if (!field.equals("itemCount"))
+						return false;
+					playlist.itemCount = parser.getValueAsInt();
+					return true;
+				});
+				yield true;
+			}
+			default -> false;
+		});
+		return new Playlist(playlist.id, playlist.channelId, playlist.publishedAt, playlist.title,
+				playlist.description, playlist.itemCount);
+	}
+
+	/**
+	 * @return the id of the video in a {@code playlistItems} item
+	 */
+	static String playlistItemVideoId(JsonParser parser) throws IOException {
+		return nestedVideoId(parser, "contentDetails");
+	}
+
+	/**
+	 * @return the id of the video in a {@code search} result
+	 */
+	static String searchResultVideoId(JsonParser parser) throws IOException {
+		return nestedVideoId(parser, "id");
+	}
+
+	private static String nestedVideoId(JsonParser parser, String container) throws IOException {
+		var videoId = new String[1];
+		fields(parser, name -> name.equals(container) && fields(parser, field -> {
+			if (!field.equals("videoId"))
+				return false;
+			videoId[0] = parser.getValueAsString();
+			return true;
+		}));
+		return videoId[0];
+	}
+
+	private static URL defaultThumbnail(JsonParser parser) throws IOException {
+		var url = new URL[1];
+		fields(parser, size -> size.equals("default") && fields(parser, field -> {
+			if (!field.equals("url"))
+				return false;
+			url[0] = UrlUtils.url(parser.getValueAsString());
+			return true;
+		}));
+		return url[0];
+	}
+
+	private static Date date(String isoDate) {
+		return isoDate == null ? null : Date.from(Instant.parse(isoDate));
+	}
+
+	/**
+	 * hands each field of the object on which the parser is positioned to the reader, and
+	 * skips the ones it doesn't want. Leaves the parser on the object's
+	 * {@link JsonToken#END_OBJECT}.
+	 * @return {@code true}, so that it can be used as a {@link FieldReader} itself
+	 */
+	private static boolean fields(JsonParser parser, FieldReader reader) throws IOException {
+		if (parser.currentToken() != JsonToken.START_OBJECT) {
+			parser.skipChildren();
+			return true;
+		}
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			var name = parser.currentName();
+			parser.nextToken();
+			if (!reader.read(name))
+				parser.skipChildren();
+		}
+		return true;
+	}
+
+}
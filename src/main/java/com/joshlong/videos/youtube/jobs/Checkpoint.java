@@ -0,0 +1,19 @@
+package com.joshlong.videos.youtube.jobs;
+
+/**
+ * how far a full {@link IngestRun} got through the pages of one of a channel's
+ * playlists, as recorded in the {@code ingest_checkpoints} table after every page.
+ *
+ * @param channelId the channel being ingested
+ * @param playlistId the playlist being read, or {@link #UPLOADS} for the channel's own
+ * videos
+ * @param pageToken the token of the next page to read, or {@code null} if there isn't
+ * one
+ * @param itemsDone how many videos have been written so far
+ * @param completed whether every page has been written
+ */
+record Checkpoint(String channelId, String playlistId, String pageToken, int itemsDone, boolean completed) {
+
+	static final String UPLOADS = "";
+
+}
@@ -0,0 +1,407 @@
+package com.joshlong.videos.youtube.jobs;
+
+import com.joshlong.videos.youtube.client.Channel;
+import com.joshlong.videos.youtube.client.Playlist;
+import com.joshlong.videos.youtube.client.Video;
+import com.joshlong.videos.youtube.client.VideoStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Collects everything an {@link IngestJob} reads from the YouTube API and then writes it
+ * all at once, in JDBC batches. A video that shows up in the channel and in three of its
+ * playlists is written once, not four times.
+ *
+ * @author Josh Long
+ */
+class IngestBatch {
+
+	static final int BATCH_SIZE = 500;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final Map<String, Video> videos = new LinkedHashMap<>();
+
+	private final Map<String, Playlist> playlists = new LinkedHashMap<>();
+
+	private final Map<String, Channel> channels = new LinkedHashMap<>();
+
+	private final Set<ChannelVideo> channelVideos = new LinkedHashSet<>();
+
+	private final Set<PlaylistVideo> playlistVideos = new LinkedHashSet<>();
+
+	private final Map<String, VideoStatistics> statistics = new LinkedHashMap<>();
+
+	private final IngestRun run;
+
+	IngestBatch(IngestRun run) {
+		this.run = run;
+	}
+
+	private record ChannelVideo(String channelId, String videoId) {
+	}
+
+	private record PlaylistVideo(String playlistId, String videoId) {
+	}
+
+	void addVideo(Video video) {
+		this.videos.put(video.videoId(), video);
+		this.channelVideos.add(new ChannelVideo(video.channelId(), video.videoId()));
+	}
+
+	void addPlaylistVideo(Playlist playlist, Video video) {
+		this.playlistVideos.add(new PlaylistVideo(playlist.playlistId(), video.videoId()));
+		this.addVideo(video);
+	}
+
+	void addStatistics(VideoStatistics videoStatistics) {
+		this.statistics.put(videoStatistics.videoId(), videoStatistics);
+	}
+
+	void addPlaylist(Playlist playlist) {
+		this.playlists.put(playlist.playlistId(), playlist);
+	}
+
+	void addChannel(Channel channel) {
+		this.channels.put(channel.channelId(), channel);
+	}
+
+	boolean hasPlaylist(String playlistId) {
+		return this.playlists.containsKey(playlistId);
+	}
+
+	IngestRun run() {
+		return this.run;
+	}
+
+	int videoCount() {
+		return this.videos.size();
+	}
+
+	/**
+	 * @return the ids of every channel that owns one of the videos we've seen
+	 */
+	Set<String> channelIds() {
+		var ids = new LinkedHashSet<String>();
+		for (var cv : this.channelVideos)
+			ids.add(cv.channelId());
+		return ids;
+	}
+
+	/**
+	 * @return the ids of every playlist in which we've seen a video
+	 */
+	Set<String> playlistIds() {
+		var ids = new LinkedHashSet<String>();
+		for (var pv : this.playlistVideos)
+			ids.add(pv.playlistId());
+		return ids;
+	}
+
+	/**
+	 * @return the ids of every video whose statistics we've refreshed
+	 */
+	Set<String> refreshedVideoIds() {
+		return Set.copyOf(this.statistics.keySet());
+	}
+
+	/**
+	 * records the ids of everything in this batch, written or not.
+	 */
+	void addTo(SeenRows seen) {
+		seen.addVideos(this.videos.keySet());
+		seen.addPlaylists(this.playlists.keySet());
+		seen.addChannels(this.channels.keySet());
+		for (var pv : this.playlistVideos)
+			seen.addPlaylistVideo(pv.playlistId(), pv.videoId());
+	}
+
+	/**
+	 * how many rows of the videos, playlists and channels a batch inserted, updated, or
+	 * left alone because their content hadn't changed.
+	 */
+	record Counts(int inserted, int updated, int skipped) {
+
+		Counts plus(Counts other) {
+			return new Counts(this.inserted + other.inserted, this.updated + other.updated,
+					this.skipped + other.skipped);
+		}
+
+	}
+
+	/**
+	 * writes everything we've collected, and adds what it wrote to the totals of the
+	 * run. Callers are expected to have started a transaction.
+	 */
+	Counts flush(JdbcTemplate db) {
+		var start = System.currentTimeMillis();
+		var counts = this.writeVideos(db).plus(this.writePlaylists(db)).plus(this.writeChannels(db));
+		this.writeCounts(db);
+		this.writeChannelVideos(db);
+		this.writePlaylistVideos(db);
+		this.writeStatistics(db);
+		db.update("""
+				update ingest_runs set
+					rows_inserted = rows_inserted + ?,
+					rows_updated = rows_updated + ?,
+					rows_skipped = rows_skipped + ?
+				where run_id = ?
+				""", counts.inserted(), counts.updated(), counts.skipped(), this.run.id());
+		this.log.debug(
+				"wrote {} videos, {} statistics, {} playlists and {} channels ({} inserted, {} updated, {} unchanged) in {}ms",
+				this.videos.size(), this.statistics.size(), this.playlists.size(), this.channels.size(),
+				counts.inserted(), counts.updated(), counts.skipped(), System.currentTimeMillis() - start);
+		return counts;
+	}
+
+	private Counts writeVideos(JdbcTemplate db) {
+		var sql = """
+				insert into yt_videos (
+					video_id,
+					title,
+					description,
+					published_at,
+					standard_thumbnail,
+					category_id,
+					view_count,
+					favorite_count,
+					comment_count,
+					like_count,
+					last_seen_run,
+					tags,
+					content_hash,
+					statistics_refreshed_at,
+					search_vector
+				)
+				values ( ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, now(), yt_video_search_vector(?, ?, ?) )
+				on conflict on constraint yt_videos_pkey
+				do update set
+					last_seen_run = excluded.last_seen_run,
+					title = excluded.title,
+					description = excluded.description,
+					published_at = excluded.published_at,
+					standard_thumbnail = excluded.standard_thumbnail,
+					category_id = excluded.category_id,
+					view_count = excluded.view_count,
+					favorite_count = excluded.favorite_count,
+					comment_count = excluded.comment_count,
+					like_count = excluded.like_count,
+					tags = excluded.tags,
+					content_hash = excluded.content_hash,
+					statistics_refreshed_at = excluded.statistics_refreshed_at,
+					search_vector = excluded.search_vector
+				""";
+		// the counts change all the time, so they're left out of the hash, and
+		// writeCounts takes care of them
+		var hashes = new LinkedHashMap<String, String>();
+		for (var video : this.videos.values())
+			hashes.put(video.videoId(), hash(video.title(), video.description(), video.publishedAt().getTime(),
+					video.standardThumbnail().toExternalForm(), video.categoryId(), video.tags()));
+		return this.upsertChanged(db, "yt_videos", "video_id", hashes, sql, id -> {
+			var video = this.videos.get(id);
+			var tags = video.tags().toArray(new String[0]);
+			return new Object[] { video.videoId(), video.title(), video.description(), video.publishedAt(),
+					video.standardThumbnail().toExternalForm(), video.categoryId(), video.viewCount(),
+					video.favoriteCount(), video.commentCount(), video.likeCount(), this.run.id(), tags,
+					hashes.get(id), video.title(), video.description(), tags };
+		});
+	}
+
+	/**
+	 * writes the counts that came with the videos, but only to the rows in which
+	 * they've actually changed. Rows that {@link #writeVideos(JdbcTemplate)} has just
+	 * written already have them, and so do most of the others.
+	 */
+	private void writeCounts(JdbcTemplate db) {
+		var sql = """
+				update yt_videos set
+					view_count = ?,
+					like_count = ?,
+					favorite_count = ?,
+					comment_count = ?,
+					statistics_refreshed_at = now()
+				where video_id = ?
+				and (view_count, like_count, favorite_count, comment_count) is distinct from (?, ?, ?, ?)
+				""";
+		var rows = new ArrayList<Object[]>(this.videos.size());
+		for (var v : this.videos.values())
+			rows.add(new Object[] { v.viewCount(), v.likeCount(), v.favoriteCount(), v.commentCount(), v.videoId(),
+					v.viewCount(), v.likeCount(), v.favoriteCount(), v.commentCount() });
+		batch(db, sql, rows);
+	}
+
+	private void writeStatistics(JdbcTemplate db) {
+		var sql = """
+				update yt_videos set
+					view_count = ?,
+					like_count = ?,
+					favorite_count = ?,
+					comment_count = ?,
+					statistics_refreshed_at = now()
+				where video_id = ?
+				""";
+		var rows = new ArrayList<Object[]>(this.statistics.size());
+		for (var s : this.statistics.values())
+			rows.add(new Object[] { s.viewCount(), s.likeCount(), s.favoriteCount(), s.commentCount(), s.videoId() });
+		batch(db, sql, rows);
+	}
+
+	private void writeChannelVideos(JdbcTemplate db) {
+		var sql = """
+				insert into yt_channel_videos(video_id, channel_id) values ( ?, ? )
+				on conflict on constraint yt_channel_videos_pkey
+				do nothing
+				""";
+		var rows = new ArrayList<Object[]>(this.channelVideos.size());
+		for (var cv : this.channelVideos)
+			rows.add(new Object[] { cv.videoId(), cv.channelId() });
+		batch(db, sql, rows);
+	}
+
+	private void writePlaylistVideos(JdbcTemplate db) {
+		var sql = """
+				insert into yt_playlist_videos( video_id, playlist_id, last_seen_run ) values ( ?, ?, ? )
+				on conflict on constraint yt_playlist_videos_pkey
+				do nothing
+				""";
+		var rows = new ArrayList<Object[]>(this.playlistVideos.size());
+		for (var pv : this.playlistVideos)
+			rows.add(new Object[] { pv.videoId(), pv.playlistId(), this.run.id() });
+		batch(db, sql, rows);
+	}
+
+	private Counts writePlaylists(JdbcTemplate db) {
+		var sql = """
+				insert into yt_playlists (
+					playlist_id,
+					channel_id,
+					published_at,
+					title,
+					description,
+					item_count,
+					last_seen_run,
+					content_hash
+				)
+				values( ?, ?, ?, ?, ?, ?, ?, ? )
+				on conflict on constraint yt_playlists_pkey
+				do update set
+					channel_id = excluded.channel_id,
+					published_at = excluded.published_at,
+					title = excluded.title,
+					description = excluded.description,
+					item_count = excluded.item_count,
+					last_seen_run = excluded.last_seen_run,
+					content_hash = excluded.content_hash
+				""";
+		var hashes = new LinkedHashMap<String, String>();
+		for (var playlist : this.playlists.values())
+			hashes.put(playlist.playlistId(), hash(playlist.channelId(), playlist.publishedAt().getTime(),
+					playlist.title(), playlist.description(), playlist.itemCount()));
+		return this.upsertChanged(db, "yt_playlists", "playlist_id", hashes, sql, id -> {
+			var playlist = this.playlists.get(id);
+			return new Object[] { playlist.playlistId(), playlist.channelId(), playlist.publishedAt(),
+					playlist.title(), playlist.description(), playlist.itemCount(), this.run.id(), hashes.get(id) };
+		});
+	}
+
+	private Counts writeChannels(JdbcTemplate db) {
+		var sql = """
+				insert into yt_channels(channel_id, description, published_at, title, last_seen_run, content_hash)
+				values ( ?, ?, ?, ?, ?, ? )
+				on conflict on constraint yt_channels_pkey
+				do update set
+					description = excluded.description,
+					published_at = excluded.published_at,
+					title = excluded.title,
+					last_seen_run = excluded.last_seen_run,
+					content_hash = excluded.content_hash
+				""";
+		var hashes = new LinkedHashMap<String, String>();
+		for (var channel : this.channels.values())
+			hashes.put(channel.channelId(),
+					hash(channel.description(), channel.publishedAt().getTime(), channel.title()));
+		return this.upsertChanged(db, "yt_channels", "channel_id", hashes, sql, id -> {
+			var channel = this.channels.get(id);
+			return new Object[] { channel.channelId(), channel.description(), channel.publishedAt(),
+					channel.title(), this.run.id(), hashes.get(id) };
+		});
+	}
+
+	/**
+	 * compares the hash of each row we'd write with the hash of the row already in the
+	 * table, and only upserts the rows that are new or have changed. Rows that haven't
+	 * changed are left alone. A full run still {@link #addTo(SeenRows) records} their ids,
+	 * since that's how we tell what's been deleted.
+	 */
+	private Counts upsertChanged(JdbcTemplate db, String table, String idColumn, Map<String, String> hashes,
+			String sql, Function<String, Object[]> row) {
+		var ids = List.copyOf(hashes.keySet());
+		var existing = new HashMap<String, String>();
+		for (var chunk : chunks(ids))
+			db.query("select " + idColumn + ", content_hash from " + table + " where " + idColumn + " = any(?)",
+					rs -> {
+						existing.put(rs.getString(1), rs.getString(2));
+					}, (Object) chunk.toArray(new String[0]));
+		var rows = new ArrayList<Object[]>();
+		var skipped = 0;
+		var inserted = 0;
+		for (var id : ids) {
+			if (!existing.containsKey(id))
+				inserted += 1;
+			else if (hashes.get(id).equals(existing.get(id))) {
+				skipped += 1;
+				continue;
+			}
+			rows.add(row.apply(id));
+		}
+		batch(db, sql, rows);
+		return new Counts(inserted, rows.size() - inserted, skipped);
+	}
+
+	/**
+	 * @return a SHA-256 digest of the given values, in hex
+	 */
+	private static String hash(Object... values) {
+		try {
+			var digest = MessageDigest.getInstance("SHA-256");
+			for (var value : values) {
+				digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+			}
+			return HexFormat.of().formatHex(digest.digest());
+		} //
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static <T> List<List<T>> chunks(List<T> list) {
+		var chunks = new ArrayList<List<T>>();
+		for (var from = 0; from < list.size(); from += BATCH_SIZE)
+			chunks.add(list.subList(from, Math.min(list.size(), from + BATCH_SIZE)));
+		return chunks;
+	}
+
+	/**
+	 * sends the rows in chunks of {@link #BATCH_SIZE}, each chunk a single JDBC batch.
+	 */
+	static void batch(JdbcTemplate db, String sql, List<Object[]> rows) {
+		for (var chunk : chunks(rows))
+			db.batchUpdate(sql, chunk);
+	}
+
+}
@@ -1,216 +1,304 @@
 package com.joshlong.videos.youtube.jobs;
 
-import com.joshlong.videos.youtube.client.Channel;
 import com.joshlong.videos.youtube.client.Playlist;
+import com.joshlong.videos.youtube.client.QuotaExceededException;
 import com.joshlong.videos.youtube.client.Video;
+import com.joshlong.videos.youtube.client.VideoPage;
 import com.joshlong.videos.youtube.client.YoutubeClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.util.StringUtils;
 
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
-class IngestJob implements Job {
+class IngestJob {
+
+	/**
+	 * there's no reason to stop early during a full ingest, but a runaway pagination
+	 * shouldn't be able to drain the whole quota.
+	 */
+	private static final int MAX_PAGES = 1_000;
+
+	/**
+	 * the YouTube Data API takes up to this many ids in a single {@code videos} request
+	 */
+	private static final int IDS_PER_REQUEST = 50;
+
+	/**
+	 * the job itself runs on a schedule, so a video refreshed exactly one interval ago
+	 * would just miss the cut and wait a whole extra interval.
+	 */
+	private static final Duration REFRESH_GRACE = Duration.ofMinutes(5);
 
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
 	private final YoutubeClient client;
 
-	private final JdbcClient db;
+	private final IngestWriter writer;
+
+	private final JdbcTemplate db;
 
 	private final String channelId;
 
-	IngestJob(YoutubeClient client, JdbcClient db, String channelId) {
+	IngestJob(YoutubeClient client, IngestWriter writer, JdbcTemplate db, String channelId) {
 		this.client = client;
+		this.writer = writer;
 		this.db = db;
 		this.channelId = channelId;
 		this.log.info("creating {} for channelId {} has been created.", getClass().getName(), this.channelId);
 	}
 
-	@Override
-	public void run() throws Exception {
+	void run(IngestRun run) {
 
 		log.info("=======================================================");
-		log.info("INGEST ({})", this.channelId);
+		log.info("INGEST ({}, {})", this.channelId, run.mode());
 		log.info("=======================================================");
-		// 0. reset all the flush states
-		// 1. get all the playlists for the main channel
-		// 2. for each playlist's videos, write the (video and playlist) into its join
-		// table and the (video and channel) into its join table
-		// 3. get all the videos for the channel, write them, also noting the channel and
-		// video in the correct join table
-		// 4. for each unique playlist_id in yt_playlist_videos, get the playlist data
-		// from the API and write it to yt_playlists
-		// 5. for each unique channel in yt_channel_videos, get the channel data from the
-		// API and write it to yt_channels
-		var allPlaylists = new ArrayList<Playlist>();
-		this.resetTablesFreshStatus();
-		var channel = this.client.getChannelById(this.channelId);
-
-		for (var video : this.client.getAllVideosByChannel(channel.channelId()))
-			if (!video.upcoming())
-				this.doWriteVideo(video);
-
-		for (var playlist : this.client.getAllPlaylistsByChannel(channel.channelId())) {
-			allPlaylists.add(playlist);
-			var videos = this.client.getAllVideosByChannel(playlist.playlistId());
-			for (var video : videos) {
-				this.doWritePlaylistsVideos(channel, playlist, video);
+
+		if (run.mode() == IngestRun.Mode.INCREMENTAL) {
+			var videoIds = this.videoIds();
+			if (!videoIds.isEmpty()) {
+				this.incremental(run, videoIds);
+				return;
 			}
+			this.log.info("there are no videos for channel {} yet, so this will be a full ingest", this.channelId);
 		}
-		this.enrichChannels();
-		this.enrichPlaylists();
 
+		this.full(run);
 	}
 
-	private void enrichChannels() {
-		var channelIds = this.db//
-				.sql(" select distinct channel_id from yt_channel_videos ")//
-				.query((r, i) -> r.getString("channel_id")).list();//
-		for (var channel : channelIds)
-			this.doWriteChannel(client.getChannelById(channel));
+	private void full(IngestRun run) {
+		// 1. get all the playlists for the channel
+		// 2. read every page of the channel's own videos and, at the same time, every
+		// page of each of its playlists. each page is written as soon as it arrives,
+		// along with a checkpoint of where we got to, so that if the run dies, the next
+		// one can pick up after the last page we wrote
+		// 3. for each unique channel we've seen, get the channel data from the API
+		// 4. write the channels and playlists
+		// the calls within each step are independent of one another, so they run
+		// concurrently. the YoutubeClient limits how many of them are actually in flight.
+		var checkpoints = this.writer.checkpoints(run, this.channelId);
 
-	}
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
 
-	private void enrichPlaylists() {
-		var playlistIds = this.db.sql(" select distinct playlist_id from yt_playlist_videos pv ")//
-				.query((rs, rowNum) -> rs.getString("playlist_id")).list();//
-		for (var playlistId : playlistIds) {
-			this.doWritePlaylist(this.client.getPlaylistById(playlistId));
+			var playlists = List.copyOf(this.client.getAllPlaylistsByChannel(this.channelId));
+			var playlistsDone = fanOut(playlists, playlist -> {
+				this.ingestPages(run, playlist.playlistId(), checkpoints.get(playlist.playlistId()),
+						token -> this.client.streamVideoPagesByPlaylist(playlist.playlistId(), token, MAX_PAGES),
+						(batch, video) -> batch.addPlaylistVideo(playlist, video));
+				return playlist;
+			}, executor);
+
+			this.ingestPages(run, Checkpoint.UPLOADS, checkpoints.get(Checkpoint.UPLOADS),
+					token -> this.client.streamVideoPagesByChannel(this.channelId, token, MAX_PAGES),
+					(batch, video) -> {
+						if (!video.upcoming())
+							batch.addVideo(video);
+					});
+			playlistsDone.join();
+
+			var batch = new IngestBatch(run);
+			playlists.forEach(batch::addPlaylist);
+			var channels = fanOut(this.channelIdsSeenBy(playlists), this.client::getChannelById, executor);
+			channels.join().forEach(batch::addChannel);
+			this.writer.write(batch);
 		}
 	}
 
-	private void doWritePlaylistsVideos(Channel channel, Playlist playlist, Video video) {
-		this.db.sql("""
-				insert into yt_playlist_videos(
-				    video_id,
-				    playlist_id
-				)
-				values( :videoId, :playlistId )
-				on conflict on constraint yt_playlist_videos_pkey
-				do nothing
-				""")//
-				.param("videoId", video.videoId())//
-				.param("playlistId", playlist.playlistId())//
-				.update();
-
-		this.doWriteVideo(video);
-
+	/**
+	 * reads the pages of a playlist, starting after the checkpoint if there is one, and
+	 * writes each page together with a new checkpoint.
+	 */
+	private <P extends VideoPage> void ingestPages(IngestRun run, String playlistId, Checkpoint checkpoint,
+			Function<String, Stream<P>> pages, BiConsumer<IngestBatch, Video> add) {
+		if (checkpoint != null && checkpoint.completed())
+			return;
+		var itemsDone = 0;
+		String pageToken = null;
+		if (checkpoint != null) {
+			itemsDone = checkpoint.itemsDone();
+			pageToken = checkpoint.pageToken();
+			this.log.info("resuming playlist '{}' of channel {} after {} videos", playlistId, this.channelId,
+					itemsDone);
+		}
+		try (var stream = pages.apply(pageToken)) {
+			var iterator = stream.iterator();
+			while (iterator.hasNext()) {
+				var page = iterator.next();
+				var batch = new IngestBatch(run);
+				for (var video : page.videos())
+					add.accept(batch, video);
+				itemsDone += page.videos().size();
+				var next = page.nextPageToken();
+				this.writer.write(batch,
+						new Checkpoint(this.channelId, playlistId, next, itemsDone, !StringUtils.hasText(next)));
+			}
+		}
 	}
 
-	private void doWritePlaylist(Playlist playlist) {
+	/**
+	 * @return this channel, and every channel that owns a video in one of its playlists.
+	 * That includes the videos of any membership this run didn't see, which it's about to
+	 * delete, but reading one channel too many is cheaper than remembering, across a
+	 * restart, which memberships the run has seen.
+	 */
+	private List<String> channelIdsSeenBy(List<Playlist> playlists) {
 		var sql = """
-				insert into yt_playlists (
-				    playlist_id,
-				    channel_id,
-				    published_at,
-				    title,
-				    description,
-				    item_count,
-				    fresh
-				)
-				values( :playlistId, :channelId, :publishedAt, :title, :description, :itemCount, true )
-				on conflict on constraint yt_playlists_pkey
-				do update SET fresh = true where yt_playlists.playlist_id = :playlistId
+				select distinct cv.channel_id from yt_channel_videos cv
+				join yt_playlist_videos pv on pv.video_id = cv.video_id
+				where pv.playlist_id = any(?)
 				""";
-		this.db.sql(sql)//
-				.param("itemCount", playlist.itemCount())//
-				.param("description", playlist.description())//
-				.param("title", playlist.title())//
-				.param("publishedAt", playlist.publishedAt())//
-				.param("channelId", playlist.channelId())//
-				.param("playlistId", playlist.playlistId())//
-				.update();
+		var playlistIds = playlists.stream().map(Playlist::playlistId).toArray(String[]::new);
+		var channelIds = new LinkedHashSet<String>();
+		channelIds.add(this.channelId);
+		channelIds.addAll(this.db.queryForList(sql, String.class, (Object) playlistIds));
+		return List.copyOf(channelIds);
 	}
 
-	private void doWriteVideo(Video video) {
-
-		if (log.isDebugEnabled())
-			log.debug("video ({}) ({}) {} ", video.channelId(), video.videoId(), video.title());
-
-		this.db//
-				.sql("""
-						insert into yt_channel_videos(video_id, channel_id)
-							values( :vid, :cid )
-						on conflict on constraint yt_channel_videos_pkey
-						do nothing
-						""")//
-				.param("vid", video.videoId())//
-				.param("cid", video.channelId())//
-				.update();
-
-		this.db//
-				.sql("""
-							  insert into yt_videos (
-								video_id ,
-								title,
-								description,
-								published_at ,
-								standard_thumbnail,
-								category_id,
-								view_count,
-								favorite_count,
-								comment_count  ,
-								like_count ,
-								fresh,
-								tags
-							  )
-							  values (
-							   :videoId,  :title,  :description, :publishedAt,
-							   :standardThumbnail,  :categoryId,  :viewCount,
-							   :favoriteCount, :commentCount, :likeCount , true,   :tags
-							  )
-							  on conflict on CONSTRAINT yt_videos_pkey
-							  do update set
-							   fresh = true,
-							   video_id  = excluded.video_id,
-							   title = excluded.title,
-							   description = excluded.description,
-							   published_at  = excluded.published_at,
-							   standard_thumbnail = excluded.standard_thumbnail,
-							   category_id = excluded.category_id,
-							   view_count = excluded.view_count,
-							   favorite_count = excluded.favorite_count,
-							   comment_count  = excluded.comment_count,
-							   like_count =  excluded.like_count ,
-							   tags = excluded.tags
-							where
-							   yt_videos.video_id =  :videoId
-						""")//
-				.param("videoId", video.videoId())//
-				.param("title", video.title()) //
-				.param("description", video.description())//
-				.param("publishedAt", video.publishedAt())//
-				.param("standardThumbnail", video.standardThumbnail().toExternalForm())//
-				.param("categoryId", video.categoryId())//
-				.param("viewCount", video.viewCount())//
-				.param("favoriteCount", video.favoriteCount())//
-				.param("commentCount", video.commentCount())//
-				.param("tags", video.tags().toArray(new String[0]))//
-				.param("likeCount", video.likeCount())//
-				.update();
+	private void incremental(IngestRun run, Set<String> videoIds) {
+		// 1. read the channel's uploads, most recently added first, until we reach one we
+		// already have. the uploads playlist is ordered by when each video was added to
+		// it, not by when it was published, so we can't stop at a publication date
+		// 2. read every video of each playlist that has changed since we last read it,
+		// so that the new uploads end up in the playlists they've been added to
+		// 3. for each tier, refresh only the statistics of the videos that are due
+		// 4. hand everything to the writer
+		var batch = new IngestBatch(run);
+		var start = System.currentTimeMillis();
+		// closing the stream cancels the page it's fetching after the one we stopped at
+		try (var stream = this.client.streamVideosByChannel(this.channelId, MAX_PAGES)) {
+			stream.takeWhile(video -> !videoIds.contains(video.videoId()))
+					.filter(video -> !video.upcoming())
+					.forEach(batch::addVideo);
+		}
+		var uploads = batch.videoCount();
+		var playlists = this.changedPlaylists();
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			var playlistVideos = fanOut(playlists,
+					playlist -> this.client.streamVideoPagesByPlaylist(playlist.playlistId(), null, MAX_PAGES)
+							.flatMap(page -> page.videos().stream())
+							.toList(),
+					executor);
+			var videos = playlistVideos.join();
+			for (var i = 0; i < playlists.size(); i++) {
+				var playlist = playlists.get(i);
+				batch.addPlaylist(playlist);
+				videos.get(i).forEach(video -> batch.addPlaylistVideo(playlist, video));
+			}
+			this.enrich(batch, executor);
+		}
+		this.log.info("found {} new uploads for channel {} and read {} changed playlists in {}ms", uploads,
+				this.channelId, playlists.size(), System.currentTimeMillis() - start);
+
+		var tiers = new ArrayList<Runnable>();
+		for (var tier : StatisticsTier.values()) {
+			var tierStart = System.currentTimeMillis();
+			var due = this.dueForRefresh(tier);
+			try {
+				this.client.getVideoStatisticsByIds(due).values().forEach(batch::addStatistics);
+			} //
+			catch (QuotaExceededException e) {
+				this.log.warn("skipping the statistics of the {} tier and older for channel {}: {}", tier,
+						this.channelId, e.getMessage());
+				break;
+			}
+			var requests = (due.size() + IDS_PER_REQUEST - 1) / IDS_PER_REQUEST;
+			var millis = System.currentTimeMillis() - tierStart;
+			this.log.info("refreshed the statistics of {} videos in the {} tier of channel {} with {} requests in {}ms",
+					due.size(), tier, this.channelId, requests, millis);
+			tiers.add(() -> this.writer.recordTier(run, this.channelId, tier, due.size(), requests, millis));
+		}
+
+		this.writer.write(batch);
+		tiers.forEach(Runnable::run);
+	}
+
+	/**
+	 * @return the channel's playlists that we don't have yet, or whose item count isn't
+	 * the one we have. That's how we notice a video being added to a playlist without
+	 * reading every playlist on every run.
+	 */
+	private List<Playlist> changedPlaylists() {
+		var itemCounts = new HashMap<String, Integer>();
+		this.db.query("select playlist_id, item_count from yt_playlists where channel_id = ?",
+				(RowCallbackHandler) rs -> {
+					itemCounts.put(rs.getString("playlist_id"), rs.getInt("item_count"));
+				}, this.channelId);
+		return this.client.getAllPlaylistsByChannel(this.channelId)
+				.stream()
+				.filter(playlist -> !Objects.equals(itemCounts.get(playlist.playlistId()), playlist.itemCount()))
+				.toList();
+	}
+
+	/**
+	 * looks up the channel for every video we've seen and the playlist for every
+	 * playlist in which we've seen one, unless we've already read it.
+	 */
+	private void enrich(IngestBatch batch, Executor executor) {
+		var channelIds = List.copyOf(batch.channelIds());
+		var playlistIds = batch.playlistIds().stream().filter(id -> !batch.hasPlaylist(id)).toList();
+		var channels = fanOut(channelIds, this.client::getChannelById, executor);
+		var enrichedPlaylists = fanOut(playlistIds, this.client::getPlaylistById, executor);
+		channels.join().forEach(batch::addChannel);
+		enrichedPlaylists.join().forEach(batch::addPlaylist);
+	}
 
+	/**
+	 * @return the ids of the videos we have for this channel
+	 */
+	private Set<String> videoIds() {
+		var sql = "select video_id from yt_channel_videos where channel_id = ?";
+		return new HashSet<>(this.db.queryForList(sql, String.class, this.channelId));
 	}
 
-	private void doWriteChannel(Channel channel) {
+	private List<String> dueForRefresh(StatisticsTier tier) {
 		var sql = """
-				    insert into yt_channels(channel_id, description, published_at, title, fresh)
-				    values (  :channelId , :description, :publishedAt, :title, true)
-				    on conflict on constraint yt_channels_pkey
-				    do update SET fresh = true where yt_channels.channel_id = :channelId
+				select v.video_id from yt_videos v
+				join yt_channel_videos cv on cv.video_id = v.video_id
+				where
+					cv.channel_id = ?
+				and
+					v.published_at <= ?
+				and
+					v.published_at > ?
+				and
+					(v.statistics_refreshed_at is null or v.statistics_refreshed_at < ?)
 				""";
-		this.db.sql(sql)//
-				.param("channelId", channel.channelId())//
-				.param("description", channel.description())//
-				.param("publishedAt", channel.publishedAt())//
-				.param("title", channel.title())//
-				.update();
+		var now = Instant.now();
+		var publishedBefore = Timestamp.from(now.minus(tier.minAge()));
+		var publishedAfter = tier.maxAge() == null ? new Timestamp(0) : Timestamp.from(now.minus(tier.maxAge()));
+		var refreshedBefore = Timestamp.from(now.minus(tier.refreshInterval()).plus(REFRESH_GRACE));
+		return this.db.queryForList(sql, String.class, this.channelId, publishedBefore, publishedAfter,
+				refreshedBefore);
 	}
 
-	private void resetTablesFreshStatus() {
-		var tables = "yt_playlist_videos,yt_channels,yt_playlists,yt_videos".split(",");
-		for (var table : tables)
-			this.db.sql("update " + table + " set fresh = false").update();
+	/**
+	 * calls {@code function} for each input on its own virtual thread.
+	 * @return the results, in the same order as the inputs
+	 */
+	private static <I, O> CompletableFuture<List<O>> fanOut(List<I> inputs, Function<I, O> function,
+			Executor executor) {
+		var futures = new ArrayList<CompletableFuture<O>>(inputs.size());
+		for (var input : inputs)
+			futures.add(CompletableFuture.supplyAsync(() -> function.apply(input), executor));
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+				.thenApply(v -> futures.stream().map(CompletableFuture::join).toList());
 	}
 
 }
@@ -0,0 +1,26 @@
+package com.joshlong.videos.youtube.jobs;
+
+/**
+ * a single run of the ingest, as recorded in the {@code ingest_runs} table.
+ *
+ * @param id the id of the run
+ * @param mode whether this run re-reads everything or only what's changed
+ */
+record IngestRun(int id, Mode mode) {
+
+	enum Mode {
+
+		/**
+		 * re-read every video, playlist and channel
+		 */
+		FULL,
+
+		/**
+		 * read only the uploads published since the last run, then refresh the
+		 * statistics of the videos whose {@link StatisticsTier tier} says they're due
+		 */
+		INCREMENTAL
+
+	}
+
+}
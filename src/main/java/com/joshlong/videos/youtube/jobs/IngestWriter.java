@@ -0,0 +1,438 @@
+package com.joshlong.videos.youtube.jobs;
+
+import com.joshlong.videos.youtube.IngestNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * The one place where the ingest writes to the database. The {@link IngestJob}s for
+ * each channel gather their data concurrently, but they hand their
+ * {@link IngestBatch batches} to this writer, which flushes them one at a time, each in
+ * its own transaction, so that concurrent channels never contend for row locks or
+ * connections.
+ *
+ * @author Josh Long
+ */
+class IngestWriter {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * the most rows of any one table that a single garbage collection statement deletes
+	 */
+	static final int GC_BATCH_SIZE = 1_000;
+
+	/**
+	 * how many rows the driver fetches at a time when we read a whole table
+	 */
+	static final int FETCH_SIZE = 1_000;
+
+	/**
+	 * the key of the advisory lock that an ingest run holds: "ingest", in ASCII, so that
+	 * it's unlikely to clash with any other advisory lock on the same database
+	 */
+	static final long RUN_LOCK_KEY = 0x696e67657374L;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final JdbcTemplate db;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final Set<String> changedChannelIds = ConcurrentHashMap.newKeySet();
+
+	private final Set<String> changedPlaylistIds = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * what each full run that this process started has seen, by run id
+	 */
+	private final Map<Integer, SeenRows> seenRows = new ConcurrentHashMap<>();
+
+	IngestWriter(JdbcTemplate db, TransactionTemplate transactionTemplate) {
+		this.db = db;
+		this.transactionTemplate = transactionTemplate;
+	}
+
+	IngestRun startRun(IngestRun.Mode mode) {
+		var id = this.db.queryForObject("insert into ingest_runs(mode) values (?) returning run_id", Integer.class,
+				mode.name());
+		if (mode == IngestRun.Mode.FULL) {
+			// only one full run at a time collects garbage, so whatever an earlier run that
+			// died has seen can go
+			this.seenRows.clear();
+			this.seenRows.put(id, new SeenRows());
+		}
+		return new IngestRun(id, mode);
+	}
+
+	void finishRun(IngestRun run) {
+		this.db.update("update ingest_runs set finished_at = now() where run_id = ?", run.id());
+	}
+
+	/**
+	 * @return when the last run of the given mode finished, or {@code null} if none has
+	 */
+	Instant lastFinishedRun(IngestRun.Mode mode) {
+		var finished = this.db.queryForObject("select max(finished_at) from ingest_runs where mode = ?",
+				Timestamp.class, mode.name());
+		return finished == null ? null : finished.toInstant();
+	}
+
+	void recordTier(IngestRun run, String channelId, StatisticsTier tier, int videos, int requests, long millis) {
+		this.write(() -> this.db.update("""
+				insert into ingest_run_tiers(run_id, channel_id, tier, videos, requests, millis)
+				values (?, ?, ?, ?, ?, ?)
+				""", run.id(), channelId, tier.name(), videos, requests, millis));
+	}
+
+	/**
+	 * deletes everything that the given full run didn't see, {@link #GC_BATCH_SIZE} rows
+	 * at a time, each batch in its own transaction, so that no single statement holds
+	 * its locks for long. The run saw a row if it wrote it, in which case the row has
+	 * its id in {@code last_seen_run}, or if it's in the run's {@link SeenRows}. Only a
+	 * run that this process started has those, so a run resumed after a restart leaves
+	 * the garbage to the next one. Videos that have been scheduled for promotion are
+	 * kept.
+	 * @return the number of rows deleted
+	 */
+	int collectGarbage(IngestRun run) {
+		Assert.state(run.mode() == IngestRun.Mode.FULL, "only a full run sees everything");
+		var seen = this.seenRows.get(run.id());
+		if (seen == null) {
+			this.log.info("run {} was resumed, so it hasn't seen everything, and won't collect any garbage", run.id());
+			return 0;
+		}
+		var playlistVideos = this.unseen("select playlist_id, video_id from yt_playlist_videos where last_seen_run < ?",
+				run, key -> seen.playlistVideo(key[0], key[1]));
+		var videos = this.unseen("""
+				select v.video_id from yt_videos v
+				where v.last_seen_run < ?
+				and not exists (select 1 from yt_promotion_batches_entries e where e.video_id = v.video_id)
+				""", run, key -> seen.video(key[0]));
+		var playlists = this.unseen("select playlist_id from yt_playlists where last_seen_run < ?", run,
+				key -> seen.playlist(key[0]));
+		var channels = this.unseen("select channel_id from yt_channels where last_seen_run < ?", run,
+				key -> seen.channel(key[0]));
+		var deleted = this.deleteInBatches(playlistVideos, """
+				delete from yt_playlist_videos
+				where (playlist_id, video_id) in (select * from unnest(?::text[], ?::text[]))
+				""");
+		deleted += this.deleteInBatches(videos, """
+				with stale as (
+					select s.video_id from unnest(?::text[]) as s(video_id)
+					where not exists (select 1 from yt_promotion_batches_entries e where e.video_id = s.video_id)
+				),
+				channel_videos as (
+					delete from yt_channel_videos where video_id in (select video_id from stale)
+				),
+				playlist_videos as (
+					delete from yt_playlist_videos where video_id in (select video_id from stale)
+				)
+				delete from yt_videos where video_id in (select video_id from stale)
+				""");
+		deleted += this.deleteInBatches(playlists, "delete from yt_playlists where playlist_id = any(?)");
+		deleted += this.deleteInBatches(channels, "delete from yt_channels where channel_id = any(?)");
+		this.seenRows.remove(run.id());
+		return deleted;
+	}
+
+	/**
+	 * rebuilds the count of each channel's videos by tag, in one transaction, so that
+	 * readers see either the old counts or the new ones.
+	 * @return the number of distinct channel and tag pairs
+	 */
+	int writeTagHistogram() {
+		var counter = new AtomicInteger();
+		this.write(() -> {
+			this.db.update("delete from yt_channel_tags");
+			counter.set(this.db.update("""
+					insert into yt_channel_tags(channel_id, tag, video_count)
+					select cv.channel_id, t.tag, count(distinct v.video_id)
+					from yt_channel_videos cv
+					    join yt_videos v on v.video_id = cv.video_id
+					    cross join unnest(v.tags) as t(tag)
+					group by cv.channel_id, t.tag
+					"""));
+		});
+		return counter.get();
+	}
+
+	/**
+	 * rebuilds the leaderboards of every channel and playlist from one pass over their
+	 * videos, in one transaction. The driver fetches the videos {@link #FETCH_SIZE} rows
+	 * at a time, which it only does inside a transaction, rather than reading them all
+	 * into memory first, so what we hold on to is just the {@link Leaderboards}.
+	 * @return the number of leaderboards
+	 */
+	int writeLeaderboards() {
+		var counter = new AtomicInteger();
+		this.write(() -> {
+			var leaderboards = new Leaderboards(Instant.now());
+			var sql = """
+					select 'CHANNEL' as scope, cv.channel_id as scope_id, v.video_id, v.view_count, v.like_count,
+					    v.published_at
+					from yt_channel_videos cv join yt_videos v on v.video_id = cv.video_id
+					union all
+					select 'PLAYLIST', pv.playlist_id, v.video_id, v.view_count, v.like_count, v.published_at
+					from yt_playlist_videos pv join yt_videos v on v.video_id = pv.video_id
+					""";
+			this.db.query(connection -> {
+				var statement = connection.prepareStatement(sql);
+				statement.setFetchSize(FETCH_SIZE);
+				return statement;
+			}, (RowCallbackHandler) rs -> {
+				leaderboards.offer(Leaderboards.Scope.valueOf(rs.getString("scope")), rs.getString("scope_id"),
+						rs.getString("video_id"), rs.getInt("view_count"), rs.getInt("like_count"),
+						rs.getTimestamp("published_at").toInstant());
+			});
+			var rows = new ArrayList<Object[]>();
+			var results = leaderboards.leaderboards();
+			results.forEach((key, entries) -> {
+				for (var position = 0; position < entries.size(); position++) {
+					var entry = entries.get(position);
+					rows.add(new Object[] { key.scope().name(), key.id(), key.metric().name(), position,
+							entry.videoId(), entry.score() });
+				}
+			});
+			this.db.update("delete from yt_leaderboards");
+			IngestBatch.batch(this.db, """
+					insert into yt_leaderboards(scope, scope_id, metric, position, video_id, score)
+					values (?, ?, ?, ?, ?, ?)
+					""", rows);
+			counter.set(results.size());
+		});
+		return counter.get();
+	}
+
+	/**
+	 * reads the keys of every row that the query returns, {@link #FETCH_SIZE} rows at a
+	 * time, and keeps those the run hasn't seen.
+	 */
+	private List<String[]> unseen(String sql, IngestRun run, Predicate<String[]> seen) {
+		var unseen = new ArrayList<String[]>();
+		this.write(() -> this.db.query(connection -> {
+			var statement = connection.prepareStatement(sql);
+			statement.setFetchSize(FETCH_SIZE);
+			statement.setInt(1, run.id());
+			return statement;
+		}, (RowCallbackHandler) rs -> {
+			var key = new String[rs.getMetaData().getColumnCount()];
+			for (var i = 0; i < key.length; i++)
+				key[i] = rs.getString(i + 1);
+			if (!seen.test(key))
+				unseen.add(key);
+		}));
+		return unseen;
+	}
+
+	/**
+	 * runs the statement once for every {@link #GC_BATCH_SIZE} keys, binding each column
+	 * of the keys as an array.
+	 */
+	private int deleteInBatches(List<String[]> keys, String sql) {
+		var deleted = 0;
+		for (var from = 0; from < keys.size(); from += GC_BATCH_SIZE) {
+			var chunk = keys.subList(from, Math.min(keys.size(), from + GC_BATCH_SIZE));
+			var columns = new Object[chunk.getFirst().length];
+			for (var column = 0; column < columns.length; column++) {
+				var values = new String[chunk.size()];
+				for (var row = 0; row < values.length; row++)
+					values[row] = chunk.get(row)[column];
+				columns[column] = values;
+			}
+			var counter = new AtomicInteger();
+			this.write(() -> counter.set(this.db.update(sql, columns)));
+			deleted += counter.get();
+		}
+		return deleted;
+	}
+
+	void write(IngestBatch batch) {
+		this.write(() -> batch.flush(this.db));
+		this.changed(batch);
+		this.seen(batch);
+	}
+
+	/**
+	 * writes the batch and the checkpoint in the same transaction, so that the
+	 * checkpoint never gets ahead of what's actually been written.
+	 */
+	void write(IngestBatch batch, Checkpoint checkpoint) {
+		this.write(() -> {
+			batch.flush(this.db);
+			this.db.update("""
+					insert into ingest_checkpoints(run_id, channel_id, playlist_id, page_token, items_done, completed)
+					values (?, ?, ?, ?, ?, ?)
+					on conflict on constraint ingest_checkpoints_pkey
+					do update set
+						page_token = excluded.page_token,
+						items_done = excluded.items_done,
+						completed = excluded.completed,
+						updated_at = now()
+					""", batch.run().id(), checkpoint.channelId(), checkpoint.playlistId(), checkpoint.pageToken(),
+					checkpoint.itemsDone(), checkpoint.completed());
+		});
+		this.changed(batch);
+		this.seen(batch);
+	}
+
+	private void seen(IngestBatch batch) {
+		var seen = this.seenRows.get(batch.run().id());
+		if (seen != null)
+			batch.addTo(seen);
+	}
+
+	/**
+	 * remembers which channels and playlists the batch changed: the ones whose videos it
+	 * wrote, and the ones that hold any video whose statistics it refreshed, since those
+	 * statistics feed each channel's and playlist's leaderboards.
+	 */
+	private void changed(IngestBatch batch) {
+		this.changedChannelIds.addAll(batch.channelIds());
+		this.changedPlaylistIds.addAll(batch.playlistIds());
+		var refreshed = batch.refreshedVideoIds().toArray(new String[0]);
+		if (refreshed.length == 0)
+			return;
+		this.changedChannelIds.addAll(this.db.queryForList(
+				"select distinct channel_id from yt_channel_videos where video_id = any(?)", String.class,
+				(Object) refreshed));
+		this.changedPlaylistIds.addAll(this.db.queryForList(
+				"select distinct playlist_id from yt_playlist_videos where video_id = any(?)", String.class,
+				(Object) refreshed));
+	}
+
+	/**
+	 * tells every node which channels and playlists have been written since the last
+	 * notification, including any written by runs that died before they could send
+	 * theirs.
+	 */
+	IngestNotification notifyFinished(IngestRun run) {
+		var channelIds = Set.copyOf(this.changedChannelIds);
+		var playlistIds = Set.copyOf(this.changedPlaylistIds);
+		var notification = IngestNotification.of(run.id(), run.mode() == IngestRun.Mode.FULL, channelIds,
+				playlistIds);
+		this.db.query("select pg_notify(?, ?)", (RowCallbackHandler) rs -> {
+		}, IngestNotification.CHANNEL, notification.payload());
+		this.changedChannelIds.removeAll(channelIds);
+		this.changedPlaylistIds.removeAll(playlistIds);
+		return notification;
+	}
+
+	/**
+	 * @return the checkpoints a run has recorded for a channel, by playlist id
+	 */
+	Map<String, Checkpoint> checkpoints(IngestRun run, String channelId) {
+		var checkpoints = new HashMap<String, Checkpoint>();
+		this.db.query("""
+				select channel_id, playlist_id, page_token, items_done, completed
+				from ingest_checkpoints where run_id = ? and channel_id = ?
+				""", rs -> {
+			var checkpoint = new Checkpoint(rs.getString("channel_id"), rs.getString("playlist_id"),
+					rs.getString("page_token"), rs.getInt("items_done"), rs.getBoolean("completed"));
+			checkpoints.put(checkpoint.playlistId(), checkpoint);
+		}, run.id(), channelId);
+		return checkpoints;
+	}
+
+	/**
+	 * tries to take the PostgreSQL advisory lock that an ingest run holds for as long as
+	 * it lasts, so that only one runs at a time, on any node. PostgreSQL ties the lock to
+	 * the session that took it, so the lock keeps a connection of its own until it's
+	 * closed, and if the node that holds it dies, so does the session, and the lock with
+	 * it.
+	 * @return the lock, or {@code null} if another run holds it
+	 */
+	RunLock tryLock() {
+		var dataSource = this.db.getDataSource();
+		var connection = DataSourceUtils.getConnection(dataSource);
+		var session = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+		var locked = false;
+		try {
+			var acquired = session.queryForObject("select pg_try_advisory_lock(?)", Boolean.class, RUN_LOCK_KEY);
+			locked = Boolean.TRUE.equals(acquired);
+			return locked ? new RunLock(connection, session) : null;
+		} //
+		finally {
+			if (!locked)
+				DataSourceUtils.releaseConnection(connection, dataSource);
+		}
+	}
+
+	/**
+	 * @param lock proof that the caller holds the {@link #tryLock() run lock}, and so
+	 * that no other run is still going
+	 * @return the most recent full run, if it never finished and no full run has
+	 * finished since it started, or {@code null} otherwise
+	 */
+	IngestRun unfinishedRun(RunLock lock) {
+		Assert.notNull(lock, "only the holder of the run lock knows that an unfinished run has died");
+		var ids = this.db.queryForList("""
+				select r.run_id from ingest_runs r
+				where r.mode = 'FULL'
+				and r.finished_at is null
+				and r.run_id > (
+					select coalesce(max(f.run_id), 0) from ingest_runs f
+					where f.mode = 'FULL' and f.finished_at is not null
+				)
+				order by r.run_id desc
+				limit 1
+				""", Integer.class);
+		return ids.isEmpty() ? null : new IngestRun(ids.getFirst(), IngestRun.Mode.FULL);
+	}
+
+	/**
+	 * the advisory lock an ingest run holds, and the connection whose session holds it.
+	 */
+	final class RunLock implements AutoCloseable {
+
+		private final Connection connection;
+
+		private final JdbcTemplate session;
+
+		private RunLock(Connection connection, JdbcTemplate session) {
+			this.connection = connection;
+			this.session = session;
+		}
+
+		@Override
+		public void close() {
+			try {
+				this.session.queryForObject("select pg_advisory_unlock(?)", Boolean.class, RUN_LOCK_KEY);
+			} //
+			finally {
+				DataSourceUtils.releaseConnection(this.connection, IngestWriter.this.db.getDataSource());
+			}
+		}
+
+	}
+
+	private void write(Runnable runnable) {
+		this.lock.lock();
+		try {
+			this.transactionTemplate.executeWithoutResult(status -> runnable.run());
+		} //
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+}
@@ -3,6 +3,7 @@ package com.joshlong.videos.youtube.jobs;
 import com.joshlong.twitter.Twitter;
 import com.joshlong.videos.JobProperties;
 import com.joshlong.videos.youtube.IngestJobInitiatedEvent;
+import com.joshlong.videos.youtube.IngestNotification;
 import com.joshlong.videos.youtube.client.YoutubeClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,9 +11,13 @@ import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.sql.DataSource;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Configuration
 class JobConfiguration {
@@ -25,8 +30,8 @@ class JobConfiguration {
 		return event -> {
 			if (properties.batch().run()) {
 				try {
-					for (var job : new Job[] { compositeIngestJob, promotion })
-						job.run();
+					compositeIngestJob.run();
+					promotion.run();
 				} //
 				catch (Exception e) {
 					throw new RuntimeException(e);
@@ -38,27 +43,109 @@ class JobConfiguration {
 	}
 
 	@Bean
-	CompositeIngestJob compositeIngestJob(YoutubeClient client, JdbcClient databaseClient, JobProperties properties) {
+	IngestWriter ingestWriter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+		return new IngestWriter(jdbcTemplate, transactionTemplate);
+	}
+
+	@Bean
+	CompositeIngestJob compositeIngestJob(YoutubeClient client, IngestWriter writer, JdbcTemplate jdbcTemplate,
+			JobProperties properties) {
 		var channelIds = properties.batch().channelIds();
-		var compositeList = new Job[channelIds.length];
+		var compositeList = new IngestJob[channelIds.length];
 		var indx = 0;
 		for (var username : channelIds)
-			compositeList[indx++] = new IngestJob(client, databaseClient, username);
-		return new CompositeIngestJob(compositeList);
+			compositeList[indx++] = new IngestJob(client, writer, jdbcTemplate, username);
+		return new CompositeIngestJob(writer, compositeList, properties.batch());
 	}
 
+	/**
+	 * runs the ingest for every channel at the same time, each on its own virtual
+	 * thread, so that a full ingest takes about as long as the slowest channel.
+	 * <p>
+	 * When incremental ingest is enabled, most runs only read what's new and refresh
+	 * the statistics that are due. Every so often, we still do a full run, to pick up
+	 * edits to titles, descriptions and playlists, and to notice what's been deleted.
+	 * Every row an ingest writes is stamped with the id of its run, and a full run
+	 * remembers the ids of the rows it saw but left alone, so once it has finished,
+	 * anything else is gone from YouTube and can be deleted.
+	 */
 	static class CompositeIngestJob implements Job {
 
-		private final Job[] jobs;
+		private final Logger log = LoggerFactory.getLogger(getClass());
+
+		private final IngestWriter writer;
+
+		private final IngestJob[] jobs;
 
-		CompositeIngestJob(Job[] jobs) {
+		private final JobProperties.Batch properties;
+
+		CompositeIngestJob(IngestWriter writer, IngestJob[] jobs, JobProperties.Batch properties) {
+			this.writer = writer;
 			this.jobs = jobs;
+			this.properties = properties;
 		}
 
+		/**
+		 * runs the ingest, unless another run, on this node or any other, still holds
+		 * the run lock, in which case this one is skipped.
+		 */
 		@Override
 		public void run() throws Exception {
-			for (var job : this.jobs)
-				job.run();
+			try (var lock = this.writer.tryLock()) {
+				if (lock == null) {
+					this.log.info("skipping this ingest run, because another one is still going");
+					return;
+				}
+				this.run(this.start(lock));
+			}
+		}
+
+		private void run(IngestRun run) throws Exception {
+			try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				var futures = new ArrayList<Future<?>>();
+				for (var job : this.jobs)
+					futures.add(executor.submit(() -> job.run(run)));
+				for (var future : futures)
+					future.get();
+			}
+			this.writer.finishRun(run);
+			if (run.mode() == IngestRun.Mode.FULL) {
+				var start = System.currentTimeMillis();
+				var deleted = this.writer.collectGarbage(run);
+				this.log.info("deleted {} rows not seen by ingest run #{} in {}ms", deleted, run.id(),
+						System.currentTimeMillis() - start);
+			}
+			var tags = this.writer.writeTagHistogram();
+			this.log.debug("counted the videos for {} channel tags after ingest run #{}", tags, run.id());
+			var leaderboards = this.writer.writeLeaderboards();
+			this.log.debug("ranked {} leaderboards after ingest run #{}", leaderboards, run.id());
+			var notification = this.writer.notifyFinished(run);
+			this.log.debug("notified {} of ingest run #{}: {}", IngestNotification.CHANNEL, run.id(), notification);
+		}
+
+		/**
+		 * resumes the last full run if it died part way through, unless we've been told
+		 * to start over, or else starts a new run. We hold the run lock, so a run that
+		 * hasn't finished isn't still going anywhere else.
+		 */
+		private IngestRun start(IngestWriter.RunLock lock) {
+			var unfinished = this.properties.restart() ? null : this.writer.unfinishedRun(lock);
+			if (unfinished != null) {
+				this.log.info("resuming ingest run #{} ({})", unfinished.id(), unfinished.mode());
+				return unfinished;
+			}
+			var run = this.writer.startRun(this.mode());
+			this.log.info("starting ingest run #{} ({})", run.id(), run.mode());
+			return run;
+		}
+
+		private IngestRun.Mode mode() {
+			if (!this.properties.incremental())
+				return IngestRun.Mode.FULL;
+			var lastFull = this.writer.lastFinishedRun(IngestRun.Mode.FULL);
+			if (lastFull == null || lastFull.plus(this.properties.fullIngestInterval()).isBefore(Instant.now()))
+				return IngestRun.Mode.FULL;
+			return IngestRun.Mode.INCREMENTAL;
 		}
 
 	}
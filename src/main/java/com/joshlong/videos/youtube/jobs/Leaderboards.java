@@ -0,0 +1,101 @@
+package com.joshlong.videos.youtube.jobs;
+
+import com.joshlong.videos.youtube.LeaderboardMetric;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the top {@link #SIZE} videos of each channel and each playlist by each
+ * {@link LeaderboardMetric}, in one pass over the videos. Each leaderboard is a min-heap that
+ * never holds more than {@link #SIZE} entries, so the work is proportional to the
+ * number of videos and the memory to the number of leaderboards, however many videos
+ * there are.
+ *
+ * @author Josh Long
+ */
+class Leaderboards {
+
+	/**
+	 * the most videos on any one leaderboard
+	 */
+	static final int SIZE = 50;
+
+	/**
+	 * a video needs this many views before its like ratio means anything
+	 */
+	static final int MIN_VIEWS_FOR_RATING = 100;
+
+	/**
+	 * only videos published this recently compete on velocity
+	 */
+	static final Duration RECENT = Duration.ofDays(90);
+
+	enum Scope {
+
+		CHANNEL, PLAYLIST
+
+	}
+
+	record Key(Scope scope, String id, LeaderboardMetric metric) {
+	}
+
+	record Entry(String videoId, double score) {
+	}
+
+	/**
+	 * the head of each heap is the entry that the next contender has to beat
+	 */
+	private static final Comparator<Entry> WORST_FIRST = Comparator.comparingDouble(Entry::score)
+			.thenComparing(Entry::videoId, Comparator.reverseOrder());
+
+	private final Map<Key, PriorityQueue<Entry>> heaps = new HashMap<>();
+
+	private final Instant now;
+
+	Leaderboards(Instant now) {
+		this.now = now;
+	}
+
+	void offer(Scope scope, String id, String videoId, int views, int likes, Instant published) {
+		this.offer(new Key(scope, id, LeaderboardMetric.VIEWS), videoId, views);
+		this.offer(new Key(scope, id, LeaderboardMetric.LIKES), videoId, likes);
+		if (views >= MIN_VIEWS_FOR_RATING)
+			this.offer(new Key(scope, id, LeaderboardMetric.RATING), videoId, 100.0 * likes / views);
+		var age = Duration.between(published, this.now);
+		if (age.compareTo(RECENT) <= 0)
+			this.offer(new Key(scope, id, LeaderboardMetric.VELOCITY), videoId,
+					views / Math.max(1.0, age.toSeconds() / 86_400.0));
+	}
+
+	private void offer(Key key, String videoId, double score) {
+		var heap = this.heaps.computeIfAbsent(key, k -> new PriorityQueue<>(SIZE + 1, WORST_FIRST));
+		var entry = new Entry(videoId, score);
+		if (heap.size() < SIZE)
+			heap.add(entry);
+		else if (WORST_FIRST.compare(entry, heap.peek()) > 0) {
+			heap.poll();
+			heap.add(entry);
+		}
+	}
+
+	/**
+	 * @return each leaderboard, best first
+	 */
+	Map<Key, List<Entry>> leaderboards() {
+		var results = new HashMap<Key, List<Entry>>();
+		this.heaps.forEach((key, heap) -> {
+			var entries = new ArrayList<>(heap);
+			entries.sort(WORST_FIRST.reversed());
+			results.put(key, entries);
+		});
+		return results;
+	}
+
+}
@@ -59,9 +59,9 @@ class PromotionJob implements Job {
 				insert into yt_promotion_batches_entries (batch_id, scheduled, video_id)
 				select
 				    p.playlist_id  as batch_id,
-				    coalesce((  select start_date - interval '1 day' from yt_promotion_batches where
-				            start_date < NOW() and stop_date > NOW()
-				             and batch_id = p.playlist_id limit 1),
+				    coalesce((  select s.start_date - interval '1 day' from yt_promotion_batch_summaries s where
+				            s.start_date < NOW() and s.stop_date > NOW()
+				             and s.batch_id = p.playlist_id),
 				        (NOW() - interval '1 day') )::date + ((row_number() over (ORDER BY v.rating desc )) || ' day ')::interval as scheduled,
 				    v.video_id  as video_id
 				from yt_playlists p
@@ -74,7 +74,7 @@ class PromotionJob implements Job {
 				""";
 
 		var currentBatchUnPromoted = """
-				select count(*) as count from yt_promotion_batches b where b.percent_promoted < 100.00 and b.batch_id = ?
+				select count(*) as count from yt_promotion_batch_summaries s where s.promoted < s.total and s.batch_id = ?
 				""";
 
 		var todaysEntry = """
@@ -0,0 +1,60 @@
+package com.joshlong.videos.youtube.jobs;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ids of every video, playlist, channel and playlist membership that a full
+ * {@link IngestRun} has seen, whether it wrote them or left them alone because they
+ * hadn't changed. They're kept in memory, for as long as the run lasts, so that it can
+ * tell what's gone from YouTube without writing a single row for anything that hasn't.
+ * For the few hundred thousand ids of even a large catalog, that's a few megabytes.
+ *
+ * @author Josh Long
+ */
+class SeenRows {
+
+	private final Set<String> videoIds = ConcurrentHashMap.newKeySet();
+
+	private final Set<String> playlistIds = ConcurrentHashMap.newKeySet();
+
+	private final Set<String> channelIds = ConcurrentHashMap.newKeySet();
+
+	private final Map<String, Set<String>> videoIdsByPlaylist = new ConcurrentHashMap<>();
+
+	void addVideos(Collection<String> ids) {
+		this.videoIds.addAll(ids);
+	}
+
+	void addPlaylists(Collection<String> ids) {
+		this.playlistIds.addAll(ids);
+	}
+
+	void addChannels(Collection<String> ids) {
+		this.channelIds.addAll(ids);
+	}
+
+	void addPlaylistVideo(String playlistId, String videoId) {
+		this.videoIdsByPlaylist.computeIfAbsent(playlistId, id -> ConcurrentHashMap.newKeySet()).add(videoId);
+	}
+
+	boolean video(String videoId) {
+		return this.videoIds.contains(videoId);
+	}
+
+	boolean playlist(String playlistId) {
+		return this.playlistIds.contains(playlistId);
+	}
+
+	boolean channel(String channelId) {
+		return this.channelIds.contains(channelId);
+	}
+
+	boolean playlistVideo(String playlistId, String videoId) {
+		var videoIds = this.videoIdsByPlaylist.get(playlistId);
+		return videoIds != null && videoIds.contains(videoId);
+	}
+
+}
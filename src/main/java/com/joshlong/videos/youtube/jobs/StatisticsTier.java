@@ -0,0 +1,49 @@
+package com.joshlong.videos.youtube.jobs;
+
+import java.time.Duration;
+
+/**
+ * Videos get most of their views in the first few days, so there's no point in
+ * refreshing the statistics of a ten year old video as often as those of one uploaded
+ * yesterday. Each tier covers videos of a given age and says how stale their statistics
+ * may get before we fetch them again.
+ *
+ * @author Josh Long
+ */
+enum StatisticsTier {
+
+	WEEK(Duration.ZERO, Duration.ofDays(7), Duration.ofHours(1)),
+
+	YEAR(Duration.ofDays(7), Duration.ofDays(365), Duration.ofDays(1)),
+
+	OLDER(Duration.ofDays(365), null, Duration.ofDays(7));
+
+	private final Duration minAge;
+
+	private final Duration maxAge;
+
+	private final Duration refreshInterval;
+
+	StatisticsTier(Duration minAge, Duration maxAge, Duration refreshInterval) {
+		this.minAge = minAge;
+		this.maxAge = maxAge;
+		this.refreshInterval = refreshInterval;
+	}
+
+	Duration minAge() {
+		return this.minAge;
+	}
+
+	/**
+	 * @return the age at which a video leaves this tier, or {@code null} if it never
+	 * does
+	 */
+	Duration maxAge() {
+		return this.maxAge;
+	}
+
+	Duration refreshInterval() {
+		return this.refreshInterval;
+	}
+
+}
@@ -0,0 +1,12 @@
+-- videosByTag looks videos up with `tags @> array[?]`
+create index if not exists yt_videos_tags_idx on yt_videos using gin (tags);
+
+-- how many of each channel's videos carry each tag. the ingest rebuilds it at the end of
+-- every run, so that the tag cloud is a lookup rather than an aggregate over every video
+create table if not exists yt_channel_tags
+(
+    channel_id  varchar(255) not null,
+    tag         text         not null,
+    video_count int          not null,
+    primary key (channel_id, tag)
+);
@@ -0,0 +1,12 @@
+-- the top videos of each channel and playlist by views, likes, rating and velocity. the
+-- ingest rebuilds it at the end of every run
+create table if not exists yt_leaderboards
+(
+    scope    varchar(16)  not null,
+    scope_id varchar(255) not null,
+    metric   varchar(16)  not null,
+    position int          not null,
+    video_id varchar(255) not null,
+    score    double precision not null,
+    primary key (scope, scope_id, metric, position)
+);
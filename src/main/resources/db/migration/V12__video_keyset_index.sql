@@ -0,0 +1,6 @@
+-- the pages of videos are ordered, and picked up after a cursor, by published_at and
+-- then video_id, compared byte by byte, so that the order doesn't depend on the
+-- database's collation. the index from V3 only covers published_at, which leaves the
+-- planner sorting every video to find the next page.
+create index if not exists yt_videos_published_at_video_id_idx
+    on yt_videos (published_at desc, video_id collate "C" desc);
@@ -0,0 +1,12 @@
+-- the primary keys of the join tables lead with channel_id and playlist_id, which
+-- covers the lookups by channel and by playlist. these go the other way, from a video
+-- back to the channels and playlists to which it belongs.
+create index if not exists yt_channel_videos_video_id_idx on yt_channel_videos (video_id) include (channel_id);
+create index if not exists yt_playlist_videos_video_id_idx on yt_playlist_videos (video_id) include (playlist_id);
+
+-- everything on the video side is ordered newest first
+create index if not exists yt_videos_published_at_idx on yt_videos (published_at desc) include (video_id);
+
+-- playlistsByName does a `title ilike '%name%'`, which a b-tree can't help with
+create extension if not exists pg_trgm;
+create index if not exists yt_playlists_title_trgm_idx on yt_playlists using gin (title gin_trgm_ops);
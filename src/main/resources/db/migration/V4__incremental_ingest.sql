@@ -0,0 +1,22 @@
+-- every run of the ingest, full or incremental
+create table if not exists ingest_runs
+(
+    run_id      serial primary key,
+    mode        varchar(32) not null,
+    started_at  timestamp   not null default now(),
+    finished_at timestamp   null
+);
+
+-- how many videos had their statistics refreshed in each tier, and what it cost
+create table if not exists ingest_run_tiers
+(
+    run_id     int          not null references ingest_runs (run_id),
+    channel_id varchar(255) not null,
+    tier       varchar(32)  not null,
+    videos     int          not null,
+    requests   int          not null,
+    millis     bigint       not null,
+    primary key (run_id, channel_id, tier)
+);
+
+alter table yt_videos add column if not exists statistics_refreshed_at timestamp null;
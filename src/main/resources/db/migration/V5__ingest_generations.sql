@@ -0,0 +1,13 @@
+-- instead of resetting a fresh flag on every row at the start of each run, every
+-- upsert stamps the row with the id of the run that saw it. neither change rewrites
+-- the tables: adding a column with a constant default and dropping one only touch
+-- the catalog. run ids start at 1, so 0 means a row no run has seen yet.
+alter table yt_videos add column if not exists last_seen_run int not null default 0;
+alter table yt_channels add column if not exists last_seen_run int not null default 0;
+alter table yt_playlists add column if not exists last_seen_run int not null default 0;
+alter table yt_playlist_videos add column if not exists last_seen_run int not null default 0;
+
+alter table yt_videos drop column if exists fresh;
+alter table yt_channels drop column if exists fresh;
+alter table yt_playlists drop column if exists fresh;
+alter table yt_playlist_videos drop column if exists fresh;
@@ -0,0 +1,11 @@
+-- a digest of everything the ingest writes to a row, so that it can skip rows that
+-- haven't changed. rows written before this migration have none, and are rewritten
+-- once by the next run.
+alter table yt_videos add column if not exists content_hash varchar(64) null;
+alter table yt_playlists add column if not exists content_hash varchar(64) null;
+alter table yt_channels add column if not exists content_hash varchar(64) null;
+
+-- what each run actually wrote to yt_videos, yt_playlists and yt_channels
+alter table ingest_runs add column if not exists rows_inserted int not null default 0;
+alter table ingest_runs add column if not exists rows_updated int not null default 0;
+alter table ingest_runs add column if not exists rows_skipped int not null default 0;
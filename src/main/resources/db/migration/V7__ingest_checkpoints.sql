@@ -0,0 +1,15 @@
+-- how far each full run got through each of a channel's playlists. the ingest writes
+-- a checkpoint in the same transaction as each page of videos, so that a run that dies
+-- can be resumed from the last page it wrote.
+create table if not exists ingest_checkpoints
+(
+    run_id      int          not null references ingest_runs (run_id),
+    channel_id  varchar(255) not null,
+    -- empty for the channel's own videos
+    playlist_id varchar(255) not null,
+    page_token  varchar(255) null,
+    items_done  int          not null default 0,
+    completed   boolean      not null default false,
+    updated_at  timestamp    not null default now(),
+    primary key (run_id, channel_id, playlist_id)
+);
@@ -0,0 +1,103 @@
+-- yt_promotion_batches used to count and scan every entry in a batch, three times over,
+-- each time it was read. instead, we keep a running summary of each batch, which the
+-- triggers below update with only the entries each statement touched. entries never
+-- move from one batch to another.
+create table if not exists yt_promotion_batch_summaries
+(
+    batch_id   varchar(255) not null primary key,
+    start_date timestamp    not null,
+    stop_date  timestamp    not null,
+    promoted   int          not null default 0,
+    total      int          not null default 0
+);
+
+-- today's unpromoted entry in a batch, and marking it promoted
+create index if not exists yt_promotion_batches_entries_batch_promoted_scheduled_idx
+    on yt_promotion_batches_entries (batch_id, promoted, scheduled);
+
+insert into yt_promotion_batch_summaries (batch_id, start_date, stop_date, promoted, total)
+select e.batch_id, min(e.scheduled), max(e.scheduled), count(e.promoted), count(*)
+from yt_promotion_batches_entries e
+group by e.batch_id
+on conflict (batch_id) do nothing;
+
+create or replace function yt_promotion_batch_summaries_on_insert() returns trigger as
+$body$
+begin
+    insert into yt_promotion_batch_summaries as s (batch_id, start_date, stop_date, promoted, total)
+    select n.batch_id, min(n.scheduled), max(n.scheduled), count(n.promoted), count(*)
+    from new_entries n
+    group by n.batch_id
+    on conflict (batch_id) do update set start_date = least(s.start_date, excluded.start_date),
+                                         stop_date  = greatest(s.stop_date, excluded.stop_date),
+                                         promoted   = s.promoted + excluded.promoted,
+                                         total      = s.total + excluded.total;
+    return null;
+end;
+$body$ language plpgsql;
+
+-- an update either marks entries promoted or moves them to another day. either way the
+-- batch's first and last days are the ends of the (batch_id, scheduled, video_id)
+-- unique index, so they're cheap to look up again
+create or replace function yt_promotion_batch_summaries_on_update() returns trigger as
+$body$
+begin
+    update yt_promotion_batch_summaries s
+    set promoted   = s.promoted + d.promoted,
+        start_date = (select min(e.scheduled) from yt_promotion_batches_entries e where e.batch_id = s.batch_id),
+        stop_date  = (select max(e.scheduled) from yt_promotion_batches_entries e where e.batch_id = s.batch_id)
+    from (select c.batch_id, sum(c.promoted) as promoted
+          from (select n.batch_id, count(n.promoted) as promoted from new_entries n group by n.batch_id
+                union all
+                select o.batch_id, -count(o.promoted) from old_entries o group by o.batch_id) c
+          group by c.batch_id) d
+    where s.batch_id = d.batch_id;
+    return null;
+end;
+$body$ language plpgsql;
+
+create or replace function yt_promotion_batch_summaries_on_delete() returns trigger as
+$body$
+begin
+    update yt_promotion_batch_summaries s
+    set promoted   = s.promoted - d.promoted,
+        total      = s.total - d.total,
+        start_date = coalesce((select min(e.scheduled) from yt_promotion_batches_entries e where e.batch_id = s.batch_id), s.start_date),
+        stop_date  = coalesce((select max(e.scheduled) from yt_promotion_batches_entries e where e.batch_id = s.batch_id), s.stop_date)
+    from (select o.batch_id, count(o.promoted) as promoted, count(*) as total
+          from old_entries o
+          group by o.batch_id) d
+    where s.batch_id = d.batch_id;
+    delete from yt_promotion_batch_summaries s where s.total <= 0;
+    return null;
+end;
+$body$ language plpgsql;
+
+-- statement level, so that seeding a batch of hundreds of entries updates its summary
+-- once, not once per entry
+drop trigger if exists yt_promotion_batch_summaries_on_insert on yt_promotion_batches_entries;
+create trigger yt_promotion_batch_summaries_on_insert
+    after insert on yt_promotion_batches_entries
+    referencing new table as new_entries
+    for each statement execute function yt_promotion_batch_summaries_on_insert();
+
+drop trigger if exists yt_promotion_batch_summaries_on_update on yt_promotion_batches_entries;
+create trigger yt_promotion_batch_summaries_on_update
+    after update on yt_promotion_batches_entries
+    referencing old table as old_entries new table as new_entries
+    for each statement execute function yt_promotion_batch_summaries_on_update();
+
+drop trigger if exists yt_promotion_batch_summaries_on_delete on yt_promotion_batches_entries;
+create trigger yt_promotion_batch_summaries_on_delete
+    after delete on yt_promotion_batches_entries
+    referencing old table as old_entries
+    for each statement execute function yt_promotion_batch_summaries_on_delete();
+
+-- for anyone still reading the old view
+drop view if exists yt_promotion_batches;
+create view yt_promotion_batches(batch_id, start_date, stop_date, percent_promoted) as
+select s.batch_id,
+       s.start_date,
+       s.stop_date,
+       100 * ((1.0 * s.promoted) / (1.0 * s.total))
+from yt_promotion_batch_summaries s;
@@ -0,0 +1,16 @@
+-- full text search over the videos. titles count for more than tags, and tags for more
+-- than descriptions. the ingest upsert fills the column in with this same function.
+create or replace function yt_video_search_vector(title text, description text, tags text[]) returns tsvector as
+$body$
+select setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+       setweight(to_tsvector('english', coalesce(array_to_string(tags, ' '), '')), 'B') ||
+       setweight(to_tsvector('english', coalesce(description, '')), 'C')
+$body$ language sql immutable;
+
+alter table yt_videos add column if not exists search_vector tsvector null;
+
+update yt_videos v
+set search_vector = yt_video_search_vector(v.title, v.description, v.tags)
+where v.search_vector is null;
+
+create index if not exists yt_videos_search_vector_idx on yt_videos using gin (search_vector);
@@ -0,0 +1,71 @@
+package com.joshlong.dates;
+
+import com.joshlong.index.IndexingStartedEvent;
+import com.joshlong.utils.DateFormatUtils;
+import org.junit.jupiter.api.Test;
+
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CachingDateFormatterTest {
+
+	private final DateFormatConfiguration configuration = new DateFormatConfiguration();
+
+	@Test
+	void isoDateFormat() throws Exception {
+		assertMatchesUnderContention(this.configuration.isoDateFormat(),
+				DateFormatUtils::getThreadsafeIsoDateTimeDateFormat);
+	}
+
+	@Test
+	void simpleDateDateFormat() throws Exception {
+		assertMatchesUnderContention(this.configuration.simpleDateDateFormat(),
+				DateFormatUtils::getThreadSafeSimpleDateDateFormat);
+	}
+
+	/**
+	 * hammers one shared {@link CachingDateFormatter} from many virtual threads and
+	 * checks every result against a private, single-threaded instance of the
+	 * {@link DateFormat} the old beans used to hand out.
+	 */
+	private static void assertMatchesUnderContention(CachingDateFormatter formatter, Supplier<DateFormat> reference)
+			throws Exception {
+		var now = System.currentTimeMillis();
+		var dates = new ArrayList<Date>();
+		for (var i = 0; i < 500; i++)
+			dates.add(new Date(now - ThreadLocalRandom.current().nextLong(20L * 365 * 24 * 60 * 60 * 1000)));
+		var tasks = new ArrayList<Callable<Void>>();
+		for (var t = 0; t < 64; t++) {
+			tasks.add(() -> {
+				var expected = reference.get();
+				for (var round = 0; round < 20; round++) {
+					if (round == 10)
+						formatter.onApplicationEvent(new IndexingStartedEvent(new Date()));
+					for (var date : shuffled(dates))
+						assertEquals(expected.format(date), formatter.format(date));
+				}
+				return null;
+			});
+		}
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (var future : executor.invokeAll(tasks))
+				future.get();
+		}
+	}
+
+	private static List<Date> shuffled(List<Date> dates) {
+		var copy = new ArrayList<>(dates);
+		Collections.shuffle(copy);
+		return copy;
+	}
+
+}
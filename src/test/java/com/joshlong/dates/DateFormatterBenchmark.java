@@ -0,0 +1,79 @@
+package com.joshlong.dates;
+
+import com.joshlong.utils.DateFormatUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ways we could share a date formatter across the GraphQL request threads.
+ * The shared, unsynchronized {@link DateFormat} we used to inject is not listed: it's
+ * fast only because it's wrong. Run it with {@code main} from the IDE.
+ *
+ * @author Josh Long
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(16)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DateFormatterBenchmark {
+
+	private final Date[] dates = new Date[256];
+
+	private final DateFormat synchronizedDateFormat = DateFormatUtils.getThreadsafeIsoDateTimeDateFormat();
+
+	private final ThreadLocal<DateFormat> threadLocalDateFormat = ThreadLocal
+			.withInitial(DateFormatUtils::getThreadsafeIsoDateTimeDateFormat);
+
+	private final DateFormatter uncachedDateFormatter = date -> DateFormatConfiguration.ISO_DATE_TIME
+			.format(date.toInstant());
+
+	private final DateFormatter cachingDateFormatter = new CachingDateFormatter(DateFormatConfiguration.ISO_DATE_TIME);
+
+	@Setup
+	public void setup() {
+		var now = System.currentTimeMillis();
+		for (var i = 0; i < this.dates.length; i++)
+			this.dates[i] = new Date(now - TimeUnit.DAYS.toMillis(i * 7L));
+	}
+
+	private Date nextDate() {
+		return this.dates[ThreadLocalRandom.current().nextInt(this.dates.length)];
+	}
+
+	@Benchmark
+	public String synchronizedSimpleDateFormat() {
+		var date = nextDate();
+		synchronized (this.synchronizedDateFormat) {
+			return this.synchronizedDateFormat.format(date);
+		}
+	}
+
+	@Benchmark
+	public String threadLocalSimpleDateFormat() {
+		return this.threadLocalDateFormat.get().format(nextDate());
+	}
+
+	@Benchmark
+	public String dateTimeFormatter() {
+		return this.uncachedDateFormatter.format(nextDate());
+	}
+
+	@Benchmark
+	public String cachingDateFormatter() {
+		return this.cachingDateFormatter.format(nextDate());
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(DateFormatterBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.joshlong.http;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpTransportInterceptorTest {
+
+	private static final String BODY = "{\"items\":[\"" + "spring ".repeat(1_000) + "\"]}";
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final List<String> acceptEncodings = new CopyOnWriteArrayList<>();
+
+	private HttpServer server;
+
+	private RestClient http;
+
+	private int compressed;
+
+	@BeforeEach
+	void start() throws Exception {
+		var gzipped = new ByteArrayOutputStream();
+		try (var out = new GZIPOutputStream(gzipped)) {
+			out.write(BODY.getBytes(StandardCharsets.UTF_8));
+		}
+		this.compressed = gzipped.size();
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		this.server.createContext("/", exchange -> {
+			var acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			this.acceptEncodings.add(acceptEncoding == null ? "" : acceptEncoding);
+			exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+			if (exchange.getRequestURI().getPath().equals("/not-modified")) {
+				exchange.sendResponseHeaders(304, -1);
+			}
+			else {
+				exchange.getResponseHeaders().add("Content-Type", "application/json");
+				exchange.sendResponseHeaders(200, gzipped.size());
+				exchange.getResponseBody().write(gzipped.toByteArray());
+			}
+			exchange.close();
+		});
+		this.server.start();
+		var transport = new InterceptingClientHttpRequestFactory(new JdkClientHttpRequestFactory(),
+				List.of(new HttpTransportInterceptor(true, this.registry)));
+		this.http = RestClient.builder()
+				.baseUrl("http://localhost:" + this.server.getAddress().getPort())
+				.requestFactory(transport)
+				.build();
+	}
+
+	@AfterEach
+	void stop() {
+		this.server.stop(0);
+	}
+
+	@Test
+	void gzippedResponsesAreDecompressedAndMetered() {
+		var body = this.http.get().uri("/videos").retrieve().body(String.class);
+		assertEquals(BODY, body);
+		assertEquals(List.of("gzip"), this.acceptEncodings);
+
+		var received = this.registry.get("http.outbound.bytes")
+				.tags("host", "localhost", "direction", "received")
+				.summary();
+		assertEquals(this.compressed, (long) received.totalAmount());
+		assertTrue(this.compressed < BODY.length());
+		var requests = this.registry.get("http.outbound.requests").tags("host", "localhost", "status", "200").timer();
+		assertEquals(1, requests.count());
+		assertEquals(0, this.registry.get("http.outbound.active").tags("host", "localhost").gauge().value());
+	}
+
+	@Test
+	void emptyGzippedResponsesAreEmpty() {
+		var status = this.http.get().uri("/not-modified").exchange((request, response) -> {
+			try (var body = response.getBody()) {
+				assertEquals(0, body.readAllBytes().length);
+			}
+			return response.getStatusCode().value();
+		});
+		assertEquals(304, status);
+		assertEquals(1, this.registry.get("http.outbound.requests").tags("status", "304").timer().count());
+	}
+
+}
@@ -0,0 +1,198 @@
+package com.joshlong.jdbc;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReplicaDataSourceTest {
+
+	private static final Duration MAX_LAG = Duration.ofSeconds(10);
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final List<String> connections = new ArrayList<>();
+
+	private final Map<DataSource, Duration> lags = new HashMap<>();
+
+	private final Map<String, FakeDataSource> fakes = new HashMap<>();
+
+	private final FakeDataSource primary = new FakeDataSource("primary");
+
+	private ReplicaDataSource replicas;
+
+	@AfterEach
+	void close() throws Exception {
+		if (this.replicas != null)
+			this.replicas.close();
+	}
+
+	@Test
+	void readOnlyTransactionsTakeTurnsOnTheReplicas() {
+		var db = this.db(Duration.ZERO, Duration.ofSeconds(1));
+		this.read(db);
+		this.read(db);
+		this.read(db);
+		this.write(db);
+		assertEquals(List.of("replica-0", "replica-1", "replica-0", "primary"), this.connections);
+		assertEquals(0, this.fallbacks());
+	}
+
+	@Test
+	void replicasThatAreTooFarBehindAreSkipped() {
+		var db = this.db(Duration.ofMinutes(1), Duration.ofSeconds(1));
+		this.read(db);
+		this.read(db);
+		assertEquals(List.of("replica-1", "replica-1"), this.connections);
+		assertEquals(0, this.fallbacks());
+	}
+
+	@Test
+	void readsFallBackToThePrimaryWhenNoReplicaIsCurrentEnough() {
+		var db = this.db(Duration.ofMinutes(1), null);
+		this.read(db);
+		this.read(db);
+		assertEquals(List.of("primary", "primary"), this.connections);
+		assertEquals(2, this.fallbacks());
+	}
+
+	@Test
+	void replicasThatWontHandOutConnectionsAreSkippedUntilTheNextCheck() {
+		var db = this.db(Duration.ZERO, Duration.ZERO);
+		this.fakes.get("replica-0").down = true;
+		this.read(db);
+		this.read(db);
+		this.fakes.get("replica-0").down = false;
+		this.replicas.checkLag();
+		this.read(db);
+		this.read(db);
+		assertEquals(List.of("replica-1", "replica-1", "replica-0", "replica-1"), this.connections);
+		assertEquals(0, this.fallbacks());
+	}
+
+	@Test
+	void withoutReplicasEverythingGoesToThePrimary() {
+		this.replicas = new ReplicaDataSource(this.primary, Map.of(), MAX_LAG, Duration.ofHours(1), this.registry);
+		var db = this.lazy();
+		this.read(db);
+		this.write(db);
+		assertEquals(List.of("primary", "primary"), this.connections);
+		assertEquals(0, this.fallbacks());
+	}
+
+	/**
+	 * two replicas, {@code replica-0} and {@code replica-1}, that are as far behind as
+	 * given. a {@code null} lag is a replica that can't be reached
+	 */
+	private LazyConnectionDataSourceProxy db(Duration lag0, Duration lag1) {
+		var replicas = new LinkedHashMap<String, DataSource>();
+		var lags = new Duration[] { lag0, lag1 };
+		for (var i = 0; i < lags.length; i++) {
+			var name = "replica-" + i;
+			var replica = new FakeDataSource(name);
+			this.fakes.put(name, replica);
+			replicas.put(name, replica);
+			this.lags.put(replica, lags[i]);
+		}
+		this.replicas = new ReplicaDataSource(this.primary, replicas, MAX_LAG, Duration.ofHours(1), this.registry) {
+
+			@Override
+			Duration lag(DataSource replica) {
+				var lag = ReplicaDataSourceTest.this.lags.get(replica);
+				if (lag == null)
+					throw new IllegalStateException("can't reach " + replica);
+				return lag;
+			}
+
+		};
+		this.replicas.checkLag();
+		return this.lazy();
+	}
+
+	private LazyConnectionDataSourceProxy lazy() {
+		var lazy = new LazyConnectionDataSourceProxy(this.primary);
+		lazy.setDefaultAutoCommit(true);
+		lazy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+		lazy.setReadOnlyDataSource(this.replicas);
+		return lazy;
+	}
+
+	private void read(DataSource db) {
+		this.transaction(db, true);
+	}
+
+	private void write(DataSource db) {
+		this.transaction(db, false);
+	}
+
+	private void transaction(DataSource db, boolean readOnly) {
+		var transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(db));
+		transactionTemplate.setReadOnly(readOnly);
+		transactionTemplate.executeWithoutResult(status -> new JdbcTemplate(db)
+				.execute((ConnectionCallback<Object>) connection -> connection.createStatement()));
+	}
+
+	private double fallbacks() {
+		return this.registry.counter("jdbc.replica.fallbacks").count();
+	}
+
+	/**
+	 * records the name of every data source that hands out a connection
+	 */
+	private class FakeDataSource extends AbstractDataSource {
+
+		private final String name;
+
+		private boolean down;
+
+		FakeDataSource(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			if (this.down)
+				throw new SQLException(this.name + " is down");
+			connections.add(this.name);
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+					(proxy, method, args) -> {
+						var type = method.getReturnType();
+						if (type == boolean.class)
+							return method.getName().equals("getAutoCommit");
+						if (type == int.class)
+							return Connection.TRANSACTION_READ_COMMITTED;
+						return method.getName().equals("toString") ? this.name : null;
+					});
+		}
+
+		@Override
+		public Connection getConnection(String username, String password) throws SQLException {
+			return getConnection();
+		}
+
+		@Override
+		public String toString() {
+			return this.name;
+		}
+
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.joshlong.jdbc;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * A database on the local PostgreSQL instance (the one from {@code docker-compose.yml})
+ * that's created, and migrated with the Flyway migrations, before the tests of a class
+ * and dropped after them. The tests are skipped if there's no PostgreSQL instance
+ * running. Register it with {@code @RegisterExtension} on a static field, so that it's
+ * ready by the time the class' own {@code @BeforeAll} methods run. The benchmarks, which
+ * don't run under JUnit, call {@link #create()} and {@link #drop()} themselves.
+ *
+ * @author Josh Long
+ */
+public class ScratchDatabase implements BeforeAllCallback, AfterAllCallback {
+
+	private static final String URL = "jdbc:postgresql://localhost/";
+
+	private static final String USERNAME = "postgres";
+
+	private static final String PASSWORD = "postgres";
+
+	private final String name;
+
+	private final DriverManagerDataSource admin = new DriverManagerDataSource(URL + "postgres", USERNAME,
+			PASSWORD);
+
+	private SingleConnectionDataSource dataSource;
+
+	private JdbcTemplate jdbcTemplate;
+
+	public ScratchDatabase(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public void beforeAll(ExtensionContext context) {
+		assumeTrue(this.reachable(), "there's no PostgreSQL database running on localhost");
+		this.create();
+		this.dataSource = new SingleConnectionDataSource(this.url(), USERNAME, PASSWORD, true);
+		migrate(this.dataSource);
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+	}
+
+	@Override
+	public void afterAll(ExtensionContext context) {
+		if (this.dataSource != null)
+			this.dataSource.destroy();
+		if (this.reachable())
+			this.drop();
+	}
+
+	/**
+	 * drops the database, if it's left over from an earlier run, and creates it again,
+	 * empty.
+	 */
+	public void create() {
+		var template = new JdbcTemplate(this.admin);
+		template.execute("drop database if exists " + this.name);
+		template.execute("create database " + this.name);
+	}
+
+	public void drop() {
+		new JdbcTemplate(this.admin).execute("drop database if exists " + this.name);
+	}
+
+	public static void migrate(DataSource dataSource) {
+		Flyway.configure().dataSource(dataSource).load().migrate();
+	}
+
+	public String url() {
+		return URL + this.name;
+	}
+
+	public String username() {
+		return USERNAME;
+	}
+
+	public String password() {
+		return PASSWORD;
+	}
+
+	public DataSource dataSource() {
+		return this.dataSource;
+	}
+
+	/**
+	 * @return a template for the single connection to the database, which the tests
+	 * share, so settings like {@code enable_seqscan} stick
+	 */
+	public JdbcTemplate jdbcTemplate() {
+		return this.jdbcTemplate;
+	}
+
+	private boolean reachable() {
+		try (var ignored = this.admin.getConnection()) {
+			return true;
+		} //
+		catch (Exception e) {
+			return false;
+		}
+	}
+
+}
@@ -2,6 +2,7 @@ package com.joshlong.podcasts;
 
 import com.joshlong.index.IndexingFinishedEvent;
 import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
 
 import java.net.MalformedURLException;
 import java.net.URI;
@@ -14,7 +15,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 class RomePodcastServiceTest {
 
-	private final DomAtomPodcastService service = new DomAtomPodcastService(
+	private final DomAtomPodcastService service = new DomAtomPodcastService(RestClient.create(),
 			new URI("https://api.media-mogul.io/public/feeds/moguls/16386/podcasts/1/episodes.atom").toURL());
 
 	RomePodcastServiceTest() throws MalformedURLException, URISyntaxException {
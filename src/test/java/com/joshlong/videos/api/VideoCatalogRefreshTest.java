@@ -0,0 +1,97 @@
+package com.joshlong.videos.api;
+
+import com.joshlong.jdbc.ScratchDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.net.URI;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks that refreshing the {@link VideoCatalog} for some channels reads their videos
+ * again and leaves the rest alone, against a scratch database on the local PostgreSQL
+ * instance (the one from {@code docker-compose.yml}).
+ *
+ * @author Josh Long
+ */
+class VideoCatalogRefreshTest {
+
+	@RegisterExtension
+	static final ScratchDatabase DATABASE = new ScratchDatabase("joshlong_api_video_catalog_refresh_test");
+
+	private static final Instant NEWEST = Instant.parse("2024-09-01T00:00:00Z");
+
+	private static final RowMapper<Video> VIDEOS = (rs, rowNum) -> {
+		try {
+			return new Video(rs.getString("video_id"), rs.getString("title"),
+					URI.create(rs.getString("standard_thumbnail")).toURL(), rs.getString("description"),
+					rs.getTimestamp("published_at").toInstant(), rs.getInt("view_count"), rs.getInt("favorite_count"),
+					rs.getInt("comment_count"), rs.getInt("like_count"), (String[]) rs.getArray("tags").getArray());
+		} //
+		catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	};
+
+	private static JdbcTemplate jdbcTemplate;
+
+	@BeforeAll
+	static void insertVideos() {
+		jdbcTemplate = DATABASE.jdbcTemplate();
+		for (var channel : List.of("channel-a", "channel-b"))
+			jdbcTemplate.update("""
+					insert into yt_channels (channel_id, description, published_at, title)
+					values (?, 'description', now(), 'title')
+					""", channel);
+		jdbcTemplate.update("""
+				insert into yt_playlists (playlist_id, channel_id, published_at, title, description)
+				values ('playlist', 'channel-a', now(), 'Spring Tips', 'description')
+				""");
+		video("video-1", "channel-a", 3);
+		video("video-2", "channel-a", 2);
+		video("video-3", "channel-b", 1);
+		jdbcTemplate.update("insert into yt_playlist_videos (playlist_id, video_id) values ('playlist', 'video-3')");
+	}
+
+	@Test
+	void refreshingChannelsReadsOnlyTheirVideosAgain() {
+		var catalog = VideoCatalog.load(jdbcTemplate, VIDEOS);
+		var untouched = catalog.videosById().get("video-1");
+
+		jdbcTemplate.update("update yt_videos set view_count = 42 where video_id in ('video-1', 'video-3')");
+		jdbcTemplate.update("update yt_playlists set title = 'Bootiful' where playlist_id = 'playlist'");
+		video("video-4", "channel-b", 0);
+		var refreshed = catalog.refresh(jdbcTemplate, VIDEOS, Set.of("channel-b"), Set.of());
+
+		assertEquals(List.of("video-4", "video-3"), ids(refreshed.videosByChannel("channel-b")));
+		assertEquals(42, refreshed.videosById().get("video-3").views());
+		assertSame(refreshed.videosById().get("video-3"), refreshed.videosByPlaylist("playlist").getFirst());
+		assertEquals(List.of("video-4", "video-3", "video-2", "video-1"),
+				ids(refreshed.videosByTag("spring", 10, null).edges().stream().map(VideoEdge::node).toList()));
+		assertSame(untouched, refreshed.videosById().get("video-1"));
+		assertEquals(List.of(new Playlist("playlist", "Bootiful")), refreshed.playlistsByName("boot"));
+	}
+
+	private static void video(String id, String channel, int age) {
+		jdbcTemplate.update("""
+				insert into yt_videos (video_id, title, description, published_at, standard_thumbnail, category_id,
+				    tags)
+				values (?, 'title', 'description', ?, 'https://i.ytimg.com/vi/video/default.jpg', 28, array['spring'])
+				""", id, Timestamp.from(NEWEST.minusSeconds(60L * age)));
+		jdbcTemplate.update("insert into yt_channel_videos (channel_id, video_id) values (?, ?)", channel, id);
+	}
+
+	private static List<String> ids(List<Video> videos) {
+		return videos.stream().map(Video::id).toList();
+	}
+
+}
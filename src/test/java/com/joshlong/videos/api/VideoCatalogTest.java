@@ -0,0 +1,54 @@
+package com.joshlong.videos.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VideoCatalogTest {
+
+	@Test
+	void pagesWalkEveryVideoOnceInOrder() throws Exception {
+		// three videos share each publication date, so the ids have to break the ties
+		var videos = new ArrayList<Video>();
+		var newest = Instant.parse("2024-09-01T00:00:00Z");
+		var thumbnail = URI.create("https://i.ytimg.com").toURL();
+		for (var i = 0; i < 30; i++)
+			videos.add(new Video("video-" + (char) ('a' + i % 3) + i, "title", thumbnail, "description",
+					newest.minusSeconds(60L * (i / 3)), 0, 0, 0, 0, new String[0]));
+		videos.sort(VideoCatalog.NEWEST_FIRST);
+
+		var seen = new ArrayList<Video>();
+		String after = null;
+		var pages = 0;
+		VideoConnection page;
+		do {
+			page = VideoCatalog.page(videos, 7, after);
+			page.edges().forEach(edge -> seen.add(edge.node()));
+			after = page.pageInfo().endCursor();
+			pages += 1;
+		}
+		while (page.pageInfo().hasNextPage());
+
+		assertEquals(5, pages);
+		assertEquals(videos, seen);
+	}
+
+	@Test
+	void emptyPages() {
+		var page = VideoCatalog.page(List.of(), 12, null);
+		assertTrue(page.edges().isEmpty());
+		assertFalse(page.pageInfo().hasNextPage());
+		assertThrows(InvalidCursorException.class, () -> VideoCatalog.page(List.of(), 12, "not a cursor"));
+		var notAnInstant = VideoConnection.cursor("yesterday", "video");
+		assertThrows(InvalidCursorException.class, () -> VideoCatalog.page(List.of(), 12, notAnInstant));
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.joshlong.videos.api;
+
+import com.joshlong.jdbc.ScratchDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@code EXPLAIN} for the queries in {@link JdbcVideoService} against a scratch
+ * database on the local PostgreSQL instance (the one from {@code docker-compose.yml}) and
+ * checks that the planner can answer them from the indexes in the Flyway migrations. The
+ * tables are nearly empty, so we turn off sequential scans to see what the planner
+ * <em>could</em> do once there's real data.
+ *
+ * @author Josh Long
+ */
+class VideoQueryPlanTest {
+
+	@RegisterExtension
+	static final ScratchDatabase DATABASE = new ScratchDatabase("joshlong_api_query_plan_test");
+
+	private static JdbcTemplate jdbcTemplate;
+
+	@BeforeAll
+	static void turnOffSequentialScans() {
+		jdbcTemplate = DATABASE.jdbcTemplate();
+		jdbcTemplate.execute("set enable_seqscan = off");
+	}
+
+	@Test
+	void playlistsByName() {
+		var plan = explain("select * from yt_playlists where title ilike ?", "%Spring Tips%");
+		assertTrue(plan.contains("yt_playlists_title_trgm_idx"), plan);
+	}
+
+	@Test
+	void videosByChannel() {
+		var plan = explain("""
+				select * from
+				    yt_videos v,
+				    yt_channel_videos c
+				where
+				    v.video_id =  c.video_id  and
+				    c.channel_id = ?
+				order by
+				    v.published_at desc
+				""", "UCjcceQmjS4DKBW_J_1UANow");
+		assertFalse(plan.contains("Seq Scan"), plan);
+	}
+
+	@Test
+	void videosByPlaylist() {
+		var plan = explain("""
+				select v.* from yt_videos v, yt_playlists p, yt_playlist_videos pv
+				    where
+				        pv.playlist_id = p.playlist_id
+				    and
+				        v.video_id = pv.video_id
+				    and
+				        p.playlist_id = ?
+				order by
+				    v.published_at desc
+				""", "PLgGXSWYM2FpPw8rV0tZoMiJYSCiLhPnOc");
+		assertFalse(plan.contains("Seq Scan"), plan);
+	}
+
+	@Test
+	void newestVideos() {
+		var plan = explain("select video_id from yt_videos order by published_at desc limit 12");
+		assertTrue(plan.contains("yt_videos_published_at_idx"), plan);
+	}
+
+	@Test
+	void playlistsForVideo() {
+		var plan = explain("select playlist_id from yt_playlist_videos where video_id = ?", "dQw4w9WgXcQ");
+		assertTrue(plan.contains("yt_playlist_videos_video_id_idx"), plan);
+	}
+
+	@Test
+	void searchVideos() {
+		var plan = explain("""
+				select v.video_id, ts_rank(v.search_vector, q) as rank
+				from yt_videos v, websearch_to_tsquery('english', ?) q
+				where v.search_vector @@ q
+				""", "graalvm native images");
+		assertTrue(plan.contains("yt_videos_search_vector_idx"), plan);
+	}
+
+	@Test
+	void videosByTag() {
+		var plan = explain("select video_id from yt_videos where tags @> array[?]::text[]", "graalvm");
+		assertTrue(plan.contains("yt_videos_tags_idx"), plan);
+	}
+
+	@Test
+	void videosByChannelAfterACursor() {
+		var plan = explain("""
+				select v.* from yt_videos v join yt_channel_videos c on v.video_id = c.video_id
+				where c.channel_id = ? and (v.published_at, v.video_id collate "C") < (now(), ?)
+				order by v.published_at desc, v.video_id collate "C" desc
+				limit 13
+				""", "UCjcceQmjS4DKBW_J_1UANow", "dQw4w9WgXcQ");
+		assertFalse(plan.contains("Seq Scan"), plan);
+		assertTrue(plan.contains("yt_videos_published_at_video_id_idx"), plan);
+		assertFalse(plan.contains("Sort"), plan);
+	}
+
+	private static String explain(String sql, Object... args) {
+		List<String> lines = jdbcTemplate.queryForList("explain " + sql, String.class, args);
+		return String.join(System.lineSeparator(), lines);
+	}
+
+}
@@ -0,0 +1,44 @@
+package com.joshlong.videos.youtube;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestNotificationTest {
+
+	@Test
+	void payloadsRoundTrip() {
+		var notification = IngestNotification.of(42, false, Set.of("UC7yfnfvEUlXUIfm8rGLwZdA"),
+				Set.of("PLgGXSWYM2FpPw8rV0tZoMiJYSCiLhPnOc", "PLgGXSWYM2FpNRPDWyFC3NbpSqrYaZ9kSs"));
+		assertEquals(notification, IngestNotification.parse(notification.payload()));
+	}
+
+	@Test
+	void fullRunsMayHaveChangedEverything() {
+		var notification = IngestNotification.of(42, true, Set.of("UC7yfnfvEUlXUIfm8rGLwZdA"), Set.of());
+		assertTrue(notification.full());
+		assertTrue(notification.channelIds().isEmpty());
+	}
+
+	@Test
+	void tooManyIdsForOnePayloadMeansEverythingMayHaveChanged() {
+		var playlistIds = new HashSet<String>();
+		for (var i = 0; i < 1_000; i++)
+			playlistIds.add("PLgGXSWYM2FpPw8rV0tZoMiJYSC" + i);
+		var notification = IngestNotification.of(42, false, Set.of(), playlistIds);
+		assertTrue(notification.full());
+		assertTrue(notification.playlistIds().isEmpty());
+		assertTrue(notification.payload().length() < IngestNotification.MAX_PAYLOAD_BYTES);
+	}
+
+	@Test
+	void unreadablePayloads() {
+		assertThrows(IllegalArgumentException.class, () -> IngestNotification.parse("not json"));
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.joshlong.videos.youtube.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestClient;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Compares the two ways of listing a channel's videos against the
+ * {@link YoutubeApiStub}, which waits 20ms before every response to stand in for the
+ * network: the {@code search} endpoint we used to use, and the channel's uploads
+ * playlist. Besides the time it takes, each benchmark reports, per operation, how many
+ * requests it made, how many bytes it read, how many quota units it spent and how many
+ * videos it found. Note that search finds at most 500. Run it with {@code main} from
+ * the IDE.
+ *
+ * @author Josh Long
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ChannelVideosBenchmark {
+
+	@Param({ "200", "2000" })
+	public int videos;
+
+	private YoutubeApiStub stub;
+
+	private QuotaScheduler quota;
+
+	private DefaultYoutubeClient client;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Traffic {
+
+		public long requests;
+
+		public long bytes;
+
+		public long units;
+
+		public long videosFound;
+
+	}
+
+	@Setup
+	public void setup() throws Exception {
+		this.stub = new YoutubeApiStub(this.videos, Duration.ofMillis(20));
+		var http = RestClient.builder().requestInterceptor(this.stub.interceptor()).build();
+		this.quota = new QuotaScheduler(Long.MAX_VALUE, 0, 1_000_000, 1_000_000, new SimpleMeterRegistry(),
+				Clock.systemUTC());
+		this.client = new DefaultYoutubeClient(http, "key", 8, this.quota);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.stub.close();
+	}
+
+	@Benchmark
+	public long uploadsPlaylist(Traffic traffic) {
+		return this.measure(traffic,
+				() -> this.client.streamVideosByChannel(YoutubeApiStub.CHANNEL_ID, Integer.MAX_VALUE).count());
+	}
+
+	@Benchmark
+	public long search(Traffic traffic) {
+		return this.measure(traffic, () -> {
+			var count = 0L;
+			String pageToken = null;
+			do {
+				var page = this.client.getVideosByChannel(YoutubeApiStub.CHANNEL_ID, pageToken);
+				count += page.videos().size();
+				pageToken = page.nextPageToken();
+			}
+			while (StringUtils.hasText(pageToken));
+			return count;
+		});
+	}
+
+	private long measure(Traffic traffic, LongSupplier benchmark) {
+		var requests = this.stub.totalRequests();
+		var bytes = this.stub.bytes();
+		var remaining = this.quota.remaining();
+		var found = benchmark.getAsLong();
+		traffic.requests += this.stub.totalRequests() - requests;
+		traffic.bytes += this.stub.bytes() - bytes;
+		traffic.units += remaining - this.quota.remaining();
+		traffic.videosFound += found;
+		return found;
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(ChannelVideosBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,51 @@
+package com.joshlong.videos.youtube.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class DefaultYoutubeClientTest {
+
+	private YoutubeApiStub stub;
+
+	private QuotaScheduler quota;
+
+	private DefaultYoutubeClient client;
+
+	@BeforeEach
+	void start() throws Exception {
+		this.stub = new YoutubeApiStub(1_234, Duration.ZERO);
+		var http = RestClient.builder().requestInterceptor(this.stub.interceptor()).build();
+		this.quota = new QuotaScheduler(10_000, 0, 1_000, 1_000, new SimpleMeterRegistry(), Clock.systemUTC());
+		this.client = new DefaultYoutubeClient(http, "key", 4, this.quota);
+	}
+
+	@AfterEach
+	void stop() {
+		this.stub.close();
+	}
+
+	@Test
+	void listsEveryVideoOfAChannelFromItsUploadsPlaylist() {
+		var videos = this.client.streamVideosByChannel(YoutubeApiStub.CHANNEL_ID, Integer.MAX_VALUE).toList();
+		assertEquals(1_234, videos.size());
+		assertEquals("video-000000", videos.getFirst().videoId());
+		var requests = this.stub.requests();
+		assertFalse(requests.containsKey("search"));
+		// one lookup of the channel, then a page of playlist items and a page of videos
+		// for every 50 videos
+		assertEquals(1, requests.get("channels"));
+		assertEquals(25, requests.get("playlistItems"));
+		assertEquals(25, requests.get("videos"));
+		assertEquals(10_000 - 51, this.quota.remaining());
+	}
+
+}
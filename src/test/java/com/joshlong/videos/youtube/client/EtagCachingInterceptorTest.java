@@ -0,0 +1,108 @@
+package com.joshlong.videos.youtube.client;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.client.RestClient;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EtagCachingInterceptorTest {
+
+	private final List<String> ifNoneMatchHeaders = new CopyOnWriteArrayList<>();
+
+	private final List<Integer> statuses = new CopyOnWriteArrayList<>();
+
+	private final AtomicReference<String> body = new AtomicReference<>("{\"items\":[1,2,3]}");
+
+	private HttpServer server;
+
+	@TempDir
+	File directory;
+
+	@BeforeEach
+	void start() throws Exception {
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		this.server.createContext("/", exchange -> {
+			var current = this.body.get();
+			var etag = "\"" + Integer.toHexString(current.hashCode()) + "\"";
+			var ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+			this.ifNoneMatchHeaders.add(ifNoneMatch == null ? "" : ifNoneMatch);
+			exchange.getResponseHeaders().add("ETag", etag);
+			if (etag.equals(ifNoneMatch)) {
+				this.statuses.add(304);
+				exchange.sendResponseHeaders(304, -1);
+			}
+			else {
+				var bytes = current.getBytes(StandardCharsets.UTF_8);
+				this.statuses.add(200);
+				exchange.getResponseHeaders().add("Content-Type", "application/json");
+				exchange.sendResponseHeaders(200, bytes.length);
+				exchange.getResponseBody().write(bytes);
+			}
+			exchange.close();
+		});
+		this.server.start();
+	}
+
+	@AfterEach
+	void stop() {
+		this.server.stop(0);
+	}
+
+	private RestClient client(long maxSizeInBytes) {
+		return RestClient.builder()
+				.baseUrl("http://localhost:" + this.server.getAddress().getPort())
+				.requestInterceptor(new EtagCachingInterceptor(this.directory, maxSizeInBytes))
+				.build();
+	}
+
+	@Test
+	void replaysTheCachedBodyWhenNotModified() {
+		var http = client(1024 * 1024);
+		var first = http.get().uri("/youtube/v3/playlists?id=1").retrieve().body(String.class);
+		var second = http.get().uri("/youtube/v3/playlists?id=1").retrieve().body(String.class);
+		assertEquals(this.body.get(), first);
+		assertEquals(first, second);
+		assertEquals(List.of(200, 304), this.statuses);
+		assertEquals("", this.ifNoneMatchHeaders.get(0));
+		assertTrue(this.ifNoneMatchHeaders.get(1).startsWith("\""));
+	}
+
+	@Test
+	void refreshesTheCachedBodyWhenModified() {
+		var http = client(1024 * 1024);
+		http.get().uri("/youtube/v3/playlists?id=1").retrieve().body(String.class);
+		this.body.set("{\"items\":[4,5,6]}");
+		var second = http.get().uri("/youtube/v3/playlists?id=1").retrieve().body(String.class);
+		var third = http.get().uri("/youtube/v3/playlists?id=1").retrieve().body(String.class);
+		assertEquals(this.body.get(), second);
+		assertEquals(second, third);
+		assertEquals(List.of(200, 200, 304), this.statuses);
+	}
+
+	@Test
+	void evictsTheLeastRecentlyUsedEntries() {
+		var http = client(100);
+		for (var i = 0; i < 10; i++)
+			http.get().uri("/youtube/v3/playlists?id=" + i).retrieve().body(String.class);
+		var files = this.directory.listFiles((dir, name) -> name.endsWith(".etag-cache"));
+		var total = 0L;
+		for (var file : files)
+			total += file.length();
+		assertTrue(total <= 100, "the cache should hold no more than 100 bytes, but holds " + total);
+		assertTrue(files.length < 10);
+		assertEquals(0, this.directory.listFiles((dir, name) -> name.endsWith(".tmp")).length);
+	}
+
+}
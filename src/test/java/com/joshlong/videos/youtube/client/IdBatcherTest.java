@@ -0,0 +1,104 @@
+package com.joshlong.videos.youtube.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdBatcherTest {
+
+	private final List<List<String>> requests = new CopyOnWriteArrayList<>();
+
+	/**
+	 * finds every id but {@code missing}, and upper cases it
+	 */
+	private Map<String, String> load(List<String> ids) {
+		this.requests.add(List.copyOf(ids));
+		var results = new HashMap<String, String>();
+		for (var id : ids)
+			if (!id.equals("missing"))
+				results.put(id, id.toUpperCase(Locale.ROOT));
+		return results;
+	}
+
+	@Test
+	void sendsAFullBatchWithoutWaitingForTheWindow() throws Exception {
+		var batcher = new IdBatcher<>(this::load, Duration.ofMinutes(1));
+		var futures = new ArrayList<CompletableFuture<String>>();
+		for (var i = 0; i < IdBatcher.MAX_IDS_PER_REQUEST; i++)
+			futures.add(batcher.load("id" + i));
+		for (var i = 0; i < futures.size(); i++)
+			assertEquals("ID" + i, futures.get(i).get(10, TimeUnit.SECONDS));
+		assertEquals(1, this.requests.size());
+		assertEquals(IdBatcher.MAX_IDS_PER_REQUEST, this.requests.getFirst().size());
+	}
+
+	@Test
+	void sendsAPartialBatchAfterTheWindow() throws Exception {
+		var batcher = new IdBatcher<>(this::load, Duration.ofMillis(50));
+		var a = batcher.load("a");
+		var b = batcher.load("b");
+		assertEquals("A", a.get(10, TimeUnit.SECONDS));
+		assertEquals("B", b.get(10, TimeUnit.SECONDS));
+		assertEquals(List.of(List.of("a", "b")), this.requests);
+	}
+
+	@Test
+	void startsANewBatchOnceTheLastOneIsFull() {
+		var batcher = new IdBatcher<>(this::load, Duration.ofMillis(50));
+		var ids = new ArrayList<String>();
+		for (var i = 0; i < IdBatcher.MAX_IDS_PER_REQUEST + 1; i++)
+			ids.add("id" + i);
+		assertEquals(ids.size(), batcher.loadAll(ids).size());
+		assertEquals(2, this.requests.size());
+		assertEquals(Set.of(IdBatcher.MAX_IDS_PER_REQUEST, 1),
+				Set.of(this.requests.get(0).size(), this.requests.get(1).size()));
+	}
+
+	@Test
+	void callersAskingForTheSameIdShareOneLookup() throws Exception {
+		var batcher = new IdBatcher<>(this::load, Duration.ofMillis(50));
+		var first = batcher.load("a");
+		var second = batcher.load("a");
+		assertSame(first, second);
+		assertEquals("A", second.get(10, TimeUnit.SECONDS));
+		assertEquals(List.of(List.of("a")), this.requests);
+	}
+
+	@Test
+	void completesMissingIdsWithNull() throws Exception {
+		var batcher = new IdBatcher<>(this::load, Duration.ofMillis(50));
+		assertNull(batcher.load("missing").get(10, TimeUnit.SECONDS));
+		assertEquals(Map.of("a", "A"), batcher.loadAll(List.of("a", "missing")));
+	}
+
+	@Test
+	void failsEveryCallerWhenTheLoaderFails() {
+		var failure = new IllegalStateException("the API is down");
+		var batcher = new IdBatcher<String>(ids -> {
+			throw failure;
+		}, Duration.ofMillis(50));
+		var a = batcher.load("a");
+		var b = batcher.load("b");
+		for (var future : List.of(a, b)) {
+			var e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+			assertSame(failure, e.getCause());
+		}
+		assertSame(failure, assertThrows(IllegalStateException.class, () -> batcher.loadAll(List.of("c"))));
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.joshlong.videos.youtube.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrefetchingPageIteratorTest {
+
+	/**
+	 * the token of each page is its number, and there are five of them
+	 */
+	private static final int PAGES = 5;
+
+	private final List<String> tokens = new CopyOnWriteArrayList<>();
+
+	private Integer fetch(String token) {
+		this.tokens.add(token);
+		return token == null ? 1 : Integer.parseInt(token);
+	}
+
+	private static String nextPageToken(Integer page) {
+		return page < PAGES ? String.valueOf(page + 1) : null;
+	}
+
+	private Stream<Integer> stream(String firstPageToken, int maxPages) {
+		return PrefetchingPageIterator.stream(this::fetch, PrefetchingPageIteratorTest::nextPageToken, firstPageToken,
+				maxPages);
+	}
+
+	@Test
+	void walksEveryPage() {
+		assertEquals(List.of(1, 2, 3, 4, 5), this.stream(null, 100).toList());
+		assertNull(this.tokens.getFirst());
+		assertEquals(List.of("2", "3", "4", "5"), this.tokens.subList(1, this.tokens.size()));
+	}
+
+	@Test
+	void stopsAfterMaxPages() {
+		assertEquals(List.of(1, 2, 3), this.stream(null, 3).toList());
+		assertEquals(3, this.tokens.size(), "there's no fourth page fetched in the background");
+	}
+
+	@Test
+	void fetchesNothingForZeroPages() {
+		assertEquals(List.of(), this.stream(null, 0).toList());
+		assertTrue(this.tokens.isEmpty());
+	}
+
+	@Test
+	void resumesFromTheFirstPageToken() {
+		assertEquals(List.of(3, 4, 5), this.stream("3", 100).toList());
+		assertEquals("3", this.tokens.getFirst());
+	}
+
+	@Test
+	void rethrowsTheExceptionOfAFailedFetch() {
+		var failure = new IllegalStateException("page 2 is gone");
+		var iterator = new PrefetchingPageIterator<Integer>(token -> {
+			if ("2".equals(token))
+				throw failure;
+			return this.fetch(token);
+		}, PrefetchingPageIteratorTest::nextPageToken, null, 100);
+		assertEquals(1, iterator.next());
+		assertSame(failure, assertThrows(IllegalStateException.class, iterator::next));
+		assertFalse(iterator.hasNext(), "a failed page ends the iteration");
+	}
+
+	@Test
+	void closingTheStreamInterruptsThePrefetch() throws Exception {
+		var prefetching = new CountDownLatch(1);
+		var interrupted = new CountDownLatch(1);
+		Function<String, Integer> fetcher = token -> {
+			if (token == null)
+				return 1;
+			prefetching.countDown();
+			try {
+				Thread.sleep(Duration.ofMinutes(1));
+			} //
+			catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+			return null;
+		};
+		try (var stream = PrefetchingPageIterator.stream(fetcher, PrefetchingPageIteratorTest::nextPageToken, 100)) {
+			var iterator = stream.iterator();
+			assertEquals(1, iterator.next());
+			assertTrue(prefetching.await(10, TimeUnit.SECONDS));
+		}
+		assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void stopsIteratingOnceClosed() {
+		var iterator = new PrefetchingPageIterator<>(this::fetch, PrefetchingPageIteratorTest::nextPageToken, null,
+				100);
+		iterator.close();
+		assertFalse(iterator.hasNext());
+		assertTrue(this.tokens.isEmpty());
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.joshlong.videos.youtube.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QuotaSchedulerTest {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final Clock clock = Clock.fixed(Instant.parse("2024-09-01T12:00:00Z"), ZoneOffset.UTC);
+
+	@Test
+	void chargesEachEndpointItsUnits() {
+		var scheduler = new QuotaScheduler(1_000, 0, 1_000, 1_000, this.registry, this.clock);
+		scheduler.acquire(YoutubeEndpoint.VIDEOS);
+		scheduler.acquire(YoutubeEndpoint.SEARCH);
+		scheduler.acquire(YoutubeEndpoint.SEARCH);
+		assertEquals(799, scheduler.remaining());
+		assertEquals(200, this.registry.get("youtube.quota.units").tag("endpoint", "search").counter().count());
+		assertEquals(1, this.registry.get("youtube.quota.units").tag("endpoint", "videos").counter().count());
+		assertEquals(799, this.registry.get("youtube.quota.remaining").gauge().value());
+	}
+
+	@Test
+	void refusesLowPriorityRequestsThatWouldEatIntoTheReserve() {
+		var scheduler = new QuotaScheduler(150, 100, 1_000, 1_000, this.registry, this.clock);
+		assertThrows(QuotaExceededException.class, () -> scheduler.acquire(YoutubeEndpoint.SEARCH));
+		for (var i = 0; i < 50; i++)
+			scheduler.acquire(YoutubeEndpoint.VIDEO_STATISTICS);
+		assertThrows(QuotaExceededException.class, () -> scheduler.acquire(YoutubeEndpoint.VIDEO_STATISTICS));
+		scheduler.acquire(YoutubeEndpoint.VIDEOS);
+		assertEquals(99, scheduler.remaining());
+	}
+
+	@Test
+	void refusesRequestsOverTheBudget() {
+		var scheduler = new QuotaScheduler(2, 0, 1_000, 1_000, this.registry, this.clock);
+		scheduler.acquire(YoutubeEndpoint.PLAYLIST_ITEMS);
+		scheduler.acquire(YoutubeEndpoint.PLAYLIST_ITEMS);
+		assertThrows(QuotaExceededException.class, () -> scheduler.acquire(YoutubeEndpoint.CHANNELS));
+	}
+
+	@Test
+	void letsHighPriorityRequestsJumpTheQueue() throws Exception {
+		// one token to start with, then one every 200ms
+		var scheduler = new QuotaScheduler(10_000, 0, 5, 1, this.registry, this.clock);
+		scheduler.acquire(YoutubeEndpoint.VIDEOS);
+		var order = new CopyOnWriteArrayList<YoutubeEndpoint>();
+		var search = Thread.startVirtualThread(() -> {
+			scheduler.acquire(YoutubeEndpoint.SEARCH);
+			order.add(YoutubeEndpoint.SEARCH);
+		});
+		// give the search a head start, so that it's queued before the cheap call
+		Thread.sleep(20);
+		var started = new CountDownLatch(1);
+		var videos = Thread.startVirtualThread(() -> {
+			started.countDown();
+			scheduler.acquire(YoutubeEndpoint.VIDEOS);
+			order.add(YoutubeEndpoint.VIDEOS);
+		});
+		started.await();
+		search.join();
+		videos.join();
+		assertEquals(YoutubeEndpoint.VIDEOS, order.getFirst());
+	}
+
+}
@@ -0,0 +1,381 @@
+package com.joshlong.videos.youtube.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.support.HttpRequestWrapper;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An offline stand-in for the parts of the YouTube Data API that the
+ * {@link DefaultYoutubeClient} calls: {@code channels}, {@code playlists},
+ * {@code playlistItems}, {@code videos} and {@code search}. It serves one channel with
+ * a given number of videos, spread over a few playlists, pages its results the way
+ * YouTube does (including giving up on {@code search} after 500 results), waits a
+ * fixed time before every response, and counts the requests and bytes it serves. Every
+ * response carries an {@code ETag}, and a request that sends it back in an
+ * {@code If-None-Match} header gets a {@code 304 Not Modified} instead of the body.
+ * <p>
+ * Point a {@link RestClient} at it with {@link #interceptor()}, or get a ready-made
+ * client with {@link #client(int)}, which caches the responses, just like the real one,
+ * so that from the second request for a URI on, the stub answers with a {@code 304}.
+ *
+ * @author Josh Long
+ */
+public class YoutubeApiStub implements AutoCloseable {
+
+	public static final String CHANNEL_ID = "UCstub0000000000000000";
+
+	public static final String UPLOADS_PLAYLIST_ID = "UUstub0000000000000000";
+
+	private static final int SEARCH_LIMIT = 500;
+
+	private static final int VIDEOS_PER_PLAYLIST = 200;
+
+	private final ObjectMapper json = new ObjectMapper();
+
+	private final Map<String, AtomicLong> requests = new ConcurrentHashMap<>();
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	private final AtomicLong notModified = new AtomicLong();
+
+	private final List<String> videoIds = new ArrayList<>();
+
+	private final Map<String, List<String>> playlists = new HashMap<>();
+
+	private final Instant newest = Instant.parse("2024-09-01T00:00:00Z");
+
+	private final Duration latency;
+
+	private final HttpServer server;
+
+	private final Path cache;
+
+	public YoutubeApiStub(int videos, Duration latency) throws IOException {
+		this.latency = latency;
+		this.cache = Files.createTempDirectory("youtube-api-stub");
+		for (var i = 0; i < videos; i++)
+			this.videoIds.add("video-%06d".formatted(i));
+		this.playlists.put(UPLOADS_PLAYLIST_ID, this.videoIds);
+		var playlistCount = Math.max(1, videos / VIDEOS_PER_PLAYLIST);
+		for (var p = 0; p < playlistCount; p++) {
+			var ids = new ArrayList<String>();
+			for (var i = p; i < videos; i += playlistCount)
+				ids.add(this.videoIds.get(i));
+			this.playlists.put("PLstub%04d".formatted(p), ids);
+		}
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		this.server.createContext("/", this::handle);
+		this.server.setExecutor(command -> Thread.startVirtualThread(command));
+		this.server.start();
+	}
+
+	/**
+	 * rewrites every request, whatever its host, to go to this stub instead
+	 */
+	public ClientHttpRequestInterceptor interceptor() {
+		var port = this.server.getAddress().getPort();
+		return (request, body, execution) -> {
+			var uri = UriComponentsBuilder.fromUri(request.getURI())
+					.scheme("http")
+					.host("localhost")
+					.port(port)
+					.build(true)
+					.toUri();
+			return execution.execute(new HttpRequestWrapper(request) {
+
+				@Override
+				public URI getURI() {
+					return uri;
+				}
+
+			}, body);
+		};
+	}
+
+	/**
+	 * @return the number of requests served, by endpoint
+	 */
+	public Map<String, Long> requests() {
+		var counts = new HashMap<String, Long>();
+		this.requests.forEach((endpoint, count) -> counts.put(endpoint, count.get()));
+		return counts;
+	}
+
+	public long totalRequests() {
+		return this.requests.values().stream().mapToLong(AtomicLong::get).sum();
+	}
+
+	public long bytes() {
+		return this.bytes.get();
+	}
+
+	/**
+	 * @return how many requests carried the {@code ETag} of an unchanged response, and
+	 * so were answered with a {@code 304 Not Modified}
+	 */
+	public long notModified() {
+		return this.notModified.get();
+	}
+
+	/**
+	 * @return the quota units that YouTube would have charged for the requests served
+	 */
+	public long units() {
+		var units = 0L;
+		// statistics are read from the same endpoint as videos, at the same price
+		for (var endpoint : YoutubeEndpoint.values()) {
+			var served = this.requests.get(endpoint.path());
+			if (served != null && endpoint != YoutubeEndpoint.VIDEO_STATISTICS)
+				units += served.get() * endpoint.units();
+		}
+		return units;
+	}
+
+	/**
+	 * @return a client that talks to this stub, with as much quota as it likes, and that
+	 * keeps the responses in a temporary {@link EtagCachingInterceptor cache}, which
+	 * {@link #close()} deletes
+	 */
+	public YoutubeClient client(int maxConcurrentRequests) {
+		var http = RestClient.builder()
+				.requestInterceptor(new EtagCachingInterceptor(this.cache.toFile(), Long.MAX_VALUE))
+				.requestInterceptor(this.interceptor())
+				.build();
+		var quota = new QuotaScheduler(Long.MAX_VALUE, 0, 1_000_000, 1_000_000, new SimpleMeterRegistry(),
+				Clock.systemUTC());
+		return new DefaultYoutubeClient(http, "key", maxConcurrentRequests, quota);
+	}
+
+	public List<String> playlistIds() {
+		return this.playlists.keySet().stream().filter(id -> !id.equals(UPLOADS_PLAYLIST_ID)).sorted().toList();
+	}
+
+	@Override
+	public void close() {
+		this.server.stop(0);
+		FileSystemUtils.deleteRecursively(this.cache.toFile());
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			Thread.sleep(this.latency);
+		} //
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		var path = exchange.getRequestURI().getPath();
+		var endpoint = path.substring(path.lastIndexOf('/') + 1);
+		this.requests.computeIfAbsent(endpoint, e -> new AtomicLong()).incrementAndGet();
+		var bytes = this.render(endpoint, query(exchange.getRequestURI().getRawQuery()));
+		if (bytes == null) {
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+			return;
+		}
+		var etag = "\"" + Integer.toHexString(Arrays.hashCode(bytes)) + "\"";
+		exchange.getResponseHeaders().add("ETag", etag);
+		if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+			this.notModified.incrementAndGet();
+			exchange.sendResponseHeaders(304, -1);
+			exchange.close();
+			return;
+		}
+		this.bytes.addAndGet(bytes.length);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (var out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * @param endpoint the last segment of the path, like {@code videos}
+	 * @param query the query parameters, decoded
+	 * @return the body the stub would respond with, or {@code null} if it doesn't know
+	 * the endpoint
+	 */
+	public byte[] render(String endpoint, Map<String, String> query) throws IOException {
+		var body = switch (endpoint) {
+			case "channels" -> this.channels();
+			case "playlists" -> this.playlists(query);
+			case "playlistItems" -> this.playlistItems(query);
+			case "videos" -> this.videos(query);
+			case "search" -> this.search(query);
+			default -> null;
+		};
+		return body == null ? null : this.json.writeValueAsBytes(body);
+	}
+
+	private ObjectNode channels() {
+		var response = this.json.createObjectNode();
+		var channel = response.putArray("items").addObject();
+		channel.put("kind", "youtube#channel");
+		channel.put("id", CHANNEL_ID);
+		var snippet = channel.putObject("snippet");
+		snippet.put("title", "Stub Channel");
+		snippet.put("description", "a channel that only exists in tests");
+		snippet.put("publishedAt", "2010-01-01T00:00:00Z");
+		channel.putObject("contentDetails").putObject("relatedPlaylists").put("uploads", UPLOADS_PLAYLIST_ID);
+		return response;
+	}
+
+	private ObjectNode playlists(Map<String, String> query) {
+		var ids = query.containsKey("id") ? Arrays.asList(query.get("id").split(",")) : this.playlistIds();
+		var response = this.json.createObjectNode();
+		var items = response.putArray("items");
+		var page = this.page(ids, query, response);
+		for (var id : page) {
+			if (!this.playlists.containsKey(id))
+				continue;
+			var playlist = items.addObject();
+			playlist.put("id", id);
+			var snippet = playlist.putObject("snippet");
+			snippet.put("title", "Playlist " + id);
+			snippet.put("description", "a playlist that only exists in tests");
+			snippet.put("publishedAt", "2015-01-01T00:00:00Z");
+			snippet.put("channelId", CHANNEL_ID);
+			playlist.putObject("contentDetails").put("itemCount", this.playlists.get(id).size());
+		}
+		return response;
+	}
+
+	private ObjectNode playlistItems(Map<String, String> query) {
+		var ids = this.playlists.getOrDefault(query.get("playlistId"), List.of());
+		var response = this.json.createObjectNode();
+		var items = response.putArray("items");
+		for (var id : this.page(ids, query, response))
+			items.addObject().putObject("contentDetails").put("videoId", id);
+		return response;
+	}
+
+	private ObjectNode search(Map<String, String> query) {
+		var ids = this.videoIds.subList(0, Math.min(SEARCH_LIMIT, this.videoIds.size()));
+		var response = this.json.createObjectNode();
+		var items = response.putArray("items");
+		for (var id : this.page(ids, query, response)) {
+			var item = items.addObject();
+			item.put("kind", "youtube#searchResult");
+			item.putObject("id").put("kind", "youtube#video").put("videoId", id);
+			this.snippet(item, id);
+		}
+		return response;
+	}
+
+	private ObjectNode videos(Map<String, String> query) {
+		var parts = query.getOrDefault("part", "");
+		var response = this.json.createObjectNode();
+		var items = response.putArray("items");
+		for (var id : query.getOrDefault("id", "").split(",")) {
+			if (!id.startsWith("video-") || Integer.parseInt(id.substring(6)) >= this.videoIds.size())
+				continue;
+			var video = items.addObject();
+			video.put("kind", "youtube#video");
+			video.put("etag", Integer.toHexString(id.hashCode()));
+			video.put("id", id);
+			if (parts.contains("snippet"))
+				this.snippet(video, id);
+			var index = Integer.parseInt(id.substring(6));
+			var statistics = video.putObject("statistics");
+			statistics.put("viewCount", Integer.toString(10_000 - index % 10_000));
+			statistics.put("likeCount", Integer.toString(100 - index % 100));
+			statistics.put("favoriteCount", "0");
+			statistics.put("commentCount", Integer.toString(index % 10));
+		}
+		return response;
+	}
+
+	/**
+	 * writes a snippet with all the fields, and about the size, of a real one, most of
+	 * which the client never reads
+	 */
+	private void snippet(ObjectNode item, String videoId) {
+		var index = Integer.parseInt(videoId.substring(6));
+		var title = "Video #" + index;
+		var description = ("the description of video #" + index + ", which is about Spring Boot. ").repeat(12);
+		var snippet = item.putObject("snippet");
+		snippet.put("publishedAt", this.newest.minus(index, ChronoUnit.HOURS).toString());
+		snippet.put("channelId", CHANNEL_ID);
+		snippet.put("title", title);
+		snippet.put("description", description);
+		var thumbnails = snippet.putObject("thumbnails");
+		var sizes = new String[] { "default", "medium", "high", "standard", "maxres" };
+		for (var i = 0; i < sizes.length; i++) {
+			var thumbnail = thumbnails.putObject(sizes[i]);
+			thumbnail.put("url", "https://i.ytimg.com/vi/" + videoId + "/" + sizes[i] + ".jpg");
+			thumbnail.put("width", 120 * (i + 1));
+			thumbnail.put("height", 90 * (i + 1));
+		}
+		snippet.put("channelTitle", "Stub Channel");
+		var tags = snippet.putArray("tags");
+		tags.add("spring");
+		tags.add("spring boot");
+		tags.add("java");
+		tags.add("tag-" + index % 20);
+		snippet.put("categoryId", "28");
+		snippet.put("liveBroadcastContent", "none");
+		snippet.put("defaultAudioLanguage", "en");
+		var localized = snippet.putObject("localized");
+		localized.put("title", title);
+		localized.put("description", description);
+	}
+
+	/**
+	 * @return the slice of {@code ids} that the query's page token and
+	 * {@code maxResults} ask for, having added the page info and the next page token to
+	 * the response
+	 */
+	private List<String> page(List<String> ids, Map<String, String> query, ObjectNode response) {
+		var max = Integer.parseInt(query.getOrDefault("maxResults", "5"));
+		var token = query.get("pageToken");
+		var from = token == null || token.equals("null") ? 0 : Integer.parseInt(token.substring(5));
+		var to = Math.min(ids.size(), from + max);
+		var pageInfo = response.putObject("pageInfo");
+		pageInfo.put("totalResults", ids.size());
+		pageInfo.put("resultsPerPage", max);
+		if (to < ids.size())
+			response.put("nextPageToken", "page-" + to);
+		if (from > 0)
+			response.put("prevPageToken", "page-" + Math.max(0, from - max));
+		return ids.subList(Math.min(from, ids.size()), to);
+	}
+
+	private static Map<String, String> query(String rawQuery) {
+		var query = new HashMap<String, String>();
+		if (rawQuery == null)
+			return query;
+		for (var pair : rawQuery.split("&")) {
+			var equals = pair.indexOf('=');
+			if (equals > 0)
+				query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+						URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+		}
+		return query;
+	}
+
+}
@@ -0,0 +1,123 @@
+package com.joshlong.videos.youtube.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.joshlong.utils.UrlUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding a page of 50 videos, and a page of 50 playlist items, by reading
+ * the whole response into a {@link JsonNode} tree and walking it, as the client used
+ * to, with decoding it a token at a time with the {@link YoutubeJsonDecoder}. The pages
+ * come from the {@link YoutubeApiStub}. Run it with {@code main} from the IDE, which
+ * adds the GC profiler so that you can compare the bytes allocated per operation, too.
+ *
+ * @author Josh Long
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class YoutubeJsonDecoderBenchmark {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final YoutubeJsonDecoder decoder = new YoutubeJsonDecoder(new JsonFactory());
+
+	private byte[] videos;
+
+	private byte[] playlistItems;
+
+	@Setup
+	public void setup() throws Exception {
+		try (var stub = new YoutubeApiStub(50, Duration.ZERO)) {
+			var ids = new ArrayList<String>();
+			for (var i = 0; i < 50; i++)
+				ids.add("video-%06d".formatted(i));
+			this.videos = stub.render("videos", Map.of("part", "snippet,statistics", "id", String.join(",", ids)));
+			this.playlistItems = stub.render("playlistItems",
+					Map.of("playlistId", YoutubeApiStub.UPLOADS_PLAYLIST_ID, "maxResults", "50"));
+		}
+	}
+
+	@Benchmark
+	public List<Video> treeVideos() throws IOException {
+		var videos = new ArrayList<Video>();
+		for (var item : this.objectMapper.readTree(this.videos).get("items"))
+			videos.add(video(item));
+		return videos;
+	}
+
+	@Benchmark
+	public List<Video> streamingVideos() throws IOException {
+		return this.decoder.page(new ByteArrayInputStream(this.videos), YoutubeJsonDecoder::video).items();
+	}
+
+	@Benchmark
+	public List<String> treePlaylistItems() throws IOException {
+		var ids = new ArrayList<String>();
+		for (var item : this.objectMapper.readTree(this.playlistItems).get("items"))
+			ids.add(item.get("contentDetails").get("videoId").textValue());
+		return ids;
+	}
+
+	@Benchmark
+	public List<String> streamingPlaylistItems() throws IOException {
+		return this.decoder
+				.page(new ByteArrayInputStream(this.playlistItems), YoutubeJsonDecoder::playlistItemVideoId)
+				.items();
+	}
+
+	/**
+	 * the tree walk that the client used to do
+	 */
+	private static Video video(JsonNode item) {
+		var id = item.get("id").textValue();
+		var snippet = item.get("snippet");
+		var channelId = snippet.get("channelId").textValue();
+		var publishedAt = Date.from(Instant.parse(snippet.get("publishedAt").textValue()));
+		var description = snippet.get("description").textValue();
+		var title = snippet.get("title").textValue();
+		var thumbnailUrl = UrlUtils.url(snippet.get("thumbnails").get("default").get("url").textValue());
+		var tags = snippet.has("tags") ? snippet.get("tags") : null;
+		var upcoming = snippet.get("liveBroadcastContent").textValue() != null
+				&& snippet.get("liveBroadcastContent").textValue().contains("upcoming");
+		var statistics = item.get("statistics");
+		var categoryId = Integer.parseInt(snippet.get("categoryId").textValue());
+		var tagsList = new ArrayList<String>();
+		if (null != tags)
+			for (var tag : tags)
+				tagsList.add(tag.textValue());
+		return new Video(id, title, description, publishedAt, thumbnailUrl, tagsList, categoryId,
+				numberOrZero(statistics, "viewCount"), numberOrZero(statistics, "likeCount"),
+				numberOrZero(statistics, "favoriteCount"), numberOrZero(statistics, "commentCount"), channelId,
+				upcoming);
+	}
+
+	private static int numberOrZero(JsonNode node, String propertyName) {
+		return node.has(propertyName) ? Integer.parseInt(node.get(propertyName).textValue()) : 0;
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(YoutubeJsonDecoderBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+
+}
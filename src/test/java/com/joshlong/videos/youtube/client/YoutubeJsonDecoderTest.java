@@ -0,0 +1,77 @@
+package com.joshlong.videos.youtube.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class YoutubeJsonDecoderTest {
+
+	private final YoutubeApiStub stub = new YoutubeApiStub(120, Duration.ZERO);
+
+	private final YoutubeJsonDecoder decoder = new YoutubeJsonDecoder(new JsonFactory());
+
+	YoutubeJsonDecoderTest() throws Exception {
+	}
+
+	@AfterEach
+	void stop() {
+		this.stub.close();
+	}
+
+	@Test
+	void decodesVideos() throws Exception {
+		var json = this.stub.render("videos", Map.of("part", "snippet,statistics", "id", "video-000007,video-000042"));
+		var page = this.decoder.page(new ByteArrayInputStream(json), YoutubeJsonDecoder::video);
+		assertEquals(2, page.items().size());
+		var video = page.items().getFirst();
+		assertEquals("video-000007", video.videoId());
+		assertEquals("Video #7", video.title());
+		assertEquals(YoutubeApiStub.CHANNEL_ID, video.channelId());
+		assertEquals(Instant.parse("2024-08-31T17:00:00Z"), video.publishedAt().toInstant());
+		assertEquals("https://i.ytimg.com/vi/video-000007/default.jpg", video.standardThumbnail().toExternalForm());
+		assertEquals(List.of("spring", "spring boot", "java", "tag-7"), video.tags());
+		assertEquals(28, video.categoryId());
+		assertEquals(9_993, video.viewCount());
+		assertEquals(93, video.likeCount());
+		assertEquals(7, video.commentCount());
+		assertFalse(video.upcoming());
+	}
+
+	@Test
+	void decodesPagesOfPlaylistItems() throws Exception {
+		var json = this.stub.render("playlistItems",
+				Map.of("playlistId", YoutubeApiStub.UPLOADS_PLAYLIST_ID, "maxResults", "50", "pageToken", "page-100"));
+		var page = this.decoder.page(new ByteArrayInputStream(json), YoutubeJsonDecoder::playlistItemVideoId);
+		assertEquals(20, page.items().size());
+		assertEquals("video-000100", page.items().getFirst());
+		assertNull(page.nextPageToken());
+		assertEquals("page-50", page.previousPageToken());
+		assertEquals(120, page.totalResults());
+		assertEquals(50, page.resultsPerPage());
+	}
+
+	@Test
+	void decodesChannelsAndPlaylists() throws Exception {
+		var channels = this.decoder.page(new ByteArrayInputStream(this.stub.render("channels", Map.of())),
+				YoutubeJsonDecoder::channel);
+		assertEquals(YoutubeApiStub.UPLOADS_PLAYLIST_ID, channels.items().getFirst().uploadsPlaylistId());
+		var playlists = this.decoder.page(
+				new ByteArrayInputStream(this.stub.render("playlists", Map.of("maxResults", "50"))),
+				YoutubeJsonDecoder::playlist);
+		var playlist = playlists.items().getFirst();
+		assertEquals("PLstub0000", playlist.playlistId());
+		assertEquals(YoutubeApiStub.CHANNEL_ID, playlist.channelId());
+		assertEquals(120, playlist.itemCount());
+	}
+
+}
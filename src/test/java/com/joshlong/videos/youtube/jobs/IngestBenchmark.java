@@ -0,0 +1,203 @@
+package com.joshlong.videos.youtube.jobs;
+
+import com.joshlong.jdbc.ScratchDatabase;
+import com.joshlong.videos.JobProperties;
+import com.joshlong.videos.youtube.client.YoutubeApiStub;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a full ingest of a channel with 1k, 10k and 100k videos, served by the
+ * {@link YoutubeApiStub}, into a scratch database on the local PostgreSQL instance
+ * (the one from {@code docker-compose.yml}). Every iteration starts from empty tables,
+ * but the client keeps its cache of the API's responses, so after the warmup the stub
+ * answers most requests with a {@code 304 Not Modified}, just like YouTube does between
+ * two runs. Besides the wall time, it reports, per ingest, how many requests went to the
+ * API, how many of those were answered with a {@code 304}, the quota units they would
+ * have cost, how many SQL statements were executed (each statement in a batch counts)
+ * and how many rows they inserted, updated or deleted.
+ * Run it with {@code main} from the IDE.
+ *
+ * @author Josh Long
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class IngestBenchmark {
+
+	private final ScratchDatabase database = new ScratchDatabase("joshlong_api_ingest_benchmark");
+
+	@Param({ "1000", "10000", "100000" })
+	public int videos;
+
+	/**
+	 * how long the stub waits before every response, in milliseconds
+	 */
+	@Param({ "20" })
+	public int latency;
+
+	private final AtomicLong statements = new AtomicLong();
+
+	private final AtomicLong rows = new AtomicLong();
+
+	private YoutubeApiStub stub;
+
+	private HikariDataSource pool;
+
+	private JdbcTemplate db;
+
+	private JobConfiguration.CompositeIngestJob job;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Work {
+
+		public long requests;
+
+		public long notModified;
+
+		public long units;
+
+		public long statements;
+
+		public long rows;
+
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		this.database.create();
+		this.pool = new HikariDataSource();
+		this.pool.setJdbcUrl(this.database.url());
+		this.pool.setUsername(this.database.username());
+		this.pool.setPassword(this.database.password());
+		ScratchDatabase.migrate(this.pool);
+
+		var dataSource = new CountingDataSource(this.pool, this.statements, this.rows);
+		this.db = new JdbcTemplate(dataSource);
+		var writer = new IngestWriter(this.db,
+				new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+		this.stub = new YoutubeApiStub(this.videos, Duration.ofMillis(this.latency));
+		var client = this.stub.client(8);
+		var jobs = new IngestJob[] { new IngestJob(client, writer, this.db, YoutubeApiStub.CHANNEL_ID) };
+		this.job = new JobConfiguration.CompositeIngestJob(writer, jobs,
+				new JobProperties.Batch(new String[] { YoutubeApiStub.CHANNEL_ID }, true, false, Duration.ofDays(7),
+						true, Duration.ofHours(12), Duration.ofHours(1)));
+	}
+
+	@Setup(Level.Iteration)
+	public void truncate() {
+		this.db.execute("""
+				truncate yt_playlist_videos, yt_channel_videos, yt_videos, yt_playlists, yt_channels,
+				    yt_channel_tags, yt_leaderboards, ingest_checkpoints, ingest_run_tiers, ingest_runs
+				restart identity cascade
+				""");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.stub.close();
+		this.pool.close();
+		this.database.drop();
+	}
+
+	@Benchmark
+	public void fullIngest(Work work) throws Exception {
+		var requests = this.stub.totalRequests();
+		var notModified = this.stub.notModified();
+		var units = this.stub.units();
+		var statements = this.statements.get();
+		var rows = this.rows.get();
+		this.job.run();
+		work.requests += this.stub.totalRequests() - requests;
+		work.notModified += this.stub.notModified() - notModified;
+		work.units += this.stub.units() - units;
+		work.statements += this.statements.get() - statements;
+		work.rows += this.rows.get() - rows;
+	}
+
+	/**
+	 * counts every statement executed, and every row changed, on its connections
+	 */
+	private static class CountingDataSource extends DelegatingDataSource {
+
+		private final AtomicLong statements;
+
+		private final AtomicLong rows;
+
+		CountingDataSource(DataSource dataSource, AtomicLong statements, AtomicLong rows) {
+			super(dataSource);
+			this.statements = statements;
+			this.rows = rows;
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			var connection = super.getConnection();
+			return proxy(Connection.class, (proxy, method, args) -> {
+				var result = invoke(connection, method, args);
+				return result instanceof Statement statement ? this.statement(statement) : result;
+			});
+		}
+
+		private Statement statement(Statement statement) {
+			var type = statement instanceof CallableStatement ? CallableStatement.class
+					: statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+			return proxy(type, (proxy, method, args) -> {
+				var result = invoke(statement, method, args);
+				var name = method.getName();
+				if (name.equals("addBatch") || (name.startsWith("execute") && !name.endsWith("Batch")))
+					this.statements.incrementAndGet();
+				if (result instanceof Integer count && name.startsWith("executeUpdate"))
+					this.rows.addAndGet(count);
+				if (result instanceof int[] counts)
+					for (var count : counts)
+						this.rows.addAndGet(Math.max(0, count));
+				return result;
+			});
+		}
+
+		private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+			return type.cast(Proxy.newProxyInstance(IngestBenchmark.class.getClassLoader(), new Class<?>[] { type },
+					handler));
+		}
+
+		private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+			try {
+				return method.invoke(target, args);
+			} //
+			catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		}
+
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(IngestBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
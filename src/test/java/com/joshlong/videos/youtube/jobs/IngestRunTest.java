@@ -0,0 +1,226 @@
+package com.joshlong.videos.youtube.jobs;
+
+import com.joshlong.jdbc.ScratchDatabase;
+import com.joshlong.videos.youtube.client.Channel;
+import com.joshlong.videos.youtube.client.Playlist;
+import com.joshlong.videos.youtube.client.Video;
+import com.joshlong.videos.youtube.client.YoutubeApiStub;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks what full {@link IngestRun}s write, skip and delete, how they resume, and that
+ * only one run at a time holds the run lock, against a scratch database on the local
+ * PostgreSQL instance (the one from {@code docker-compose.yml}).
+ *
+ * @author Josh Long
+ */
+class IngestRunTest {
+
+	@RegisterExtension
+	static final ScratchDatabase DATABASE = new ScratchDatabase("joshlong_api_ingest_run_test");
+
+	private static final Channel CHANNEL = new Channel("channel", "title", "description", new Date(0), null);
+
+	private static final Playlist PLAYLIST = new Playlist("playlist", "channel", new Date(0), "Spring Tips",
+			"description", 2);
+
+	private JdbcTemplate jdbcTemplate;
+
+	private IngestWriter writer;
+
+	@BeforeEach
+	void truncate() {
+		this.jdbcTemplate = DATABASE.jdbcTemplate();
+		this.jdbcTemplate.execute("""
+				truncate yt_playlist_videos, yt_channel_videos, yt_videos, yt_playlists, yt_channels,
+				    yt_promotion_batches_entries, yt_promotion_batch_summaries, ingest_checkpoints, ingest_runs
+				restart identity cascade
+				""");
+		this.writer = writer(DATABASE.dataSource());
+	}
+
+	@Test
+	void aFullRunLeavesRowsThatHaveNotChangedAlone() {
+		var first = this.fullRun(batch -> {
+			batch.addPlaylistVideo(PLAYLIST, video("video-1", "title"));
+			batch.addPlaylist(PLAYLIST);
+			batch.addChannel(CHANNEL);
+		});
+		var versions = this.versions();
+
+		var second = this.fullRun(batch -> {
+			batch.addPlaylistVideo(PLAYLIST, video("video-1", "title"));
+			batch.addPlaylist(PLAYLIST);
+			batch.addChannel(CHANNEL);
+		});
+		assertEquals(versions, this.versions(), "nothing was rewritten");
+
+		var third = this.fullRun(batch -> {
+			batch.addPlaylistVideo(PLAYLIST, video("video-1", "a new title"));
+			batch.addPlaylist(PLAYLIST);
+			batch.addChannel(CHANNEL);
+		});
+		assertEquals(List.of(3, 0, 0), this.counts(first));
+		assertEquals(List.of(0, 0, 3), this.counts(second));
+		assertEquals(List.of(0, 1, 2), this.counts(third));
+		assertEquals("a new title", this.jdbcTemplate.queryForObject("select title from yt_videos", String.class));
+	}
+
+	@Test
+	void garbageCollectionDeletesOnlyWhatTheRunDidNotSee() {
+		this.fullRun(batch -> {
+			batch.addPlaylistVideo(PLAYLIST, video("video-1", "title"));
+			batch.addPlaylistVideo(PLAYLIST, video("video-2", "title"));
+			batch.addVideo(video("video-3", "title"));
+			batch.addPlaylist(PLAYLIST);
+			batch.addChannel(CHANNEL);
+		});
+		this.jdbcTemplate.update("""
+				insert into yt_promotion_batches_entries (scheduled, video_id, batch_id)
+				values (now(), 'video-3', 'batch')
+				""");
+
+		// video-1, the playlist and the channel haven't changed, so this run writes
+		// nothing at all, and video-2 and video-3 are gone
+		var run = this.fullRun(batch -> {
+			batch.addPlaylistVideo(PLAYLIST, video("video-1", "title"));
+			batch.addPlaylist(PLAYLIST);
+			batch.addChannel(CHANNEL);
+		});
+		assertEquals(List.of(0, 0, 3), this.counts(run));
+		// the membership of video-2 in the playlist, and video-2 itself
+		assertEquals(2, this.writer.collectGarbage(run));
+		assertEquals(List.of("video-1", "video-3"), this.ids("select video_id from yt_videos"));
+		assertEquals(List.of("video-1", "video-3"), this.ids("select video_id from yt_channel_videos"));
+		assertEquals(List.of("video-1"), this.ids("select video_id from yt_playlist_videos"));
+		assertEquals(List.of("playlist"), this.ids("select playlist_id from yt_playlists"));
+		assertEquals(List.of("channel"), this.ids("select channel_id from yt_channels"));
+	}
+
+	@Test
+	void onlyOneRunAtATimeHoldsTheRunLock() {
+		var otherNode = writer(new DriverManagerDataSource(DATABASE.url(), DATABASE.username(), DATABASE.password()));
+		try (var lock = this.writer.tryLock()) {
+			assertNotNull(lock);
+			assertNull(otherNode.tryLock());
+		}
+		try (var lock = otherNode.tryLock()) {
+			assertNotNull(lock);
+		}
+	}
+
+	@Test
+	void aRestartedRunContinuesFromTheLastPageItWrote() throws Exception {
+		try (var stub = new YoutubeApiStub(120, Duration.ZERO)) {
+			this.jdbcTemplate.update("""
+					insert into yt_videos (video_id, title, description, published_at, standard_thumbnail,
+					    category_id)
+					values ('stale', 'title', 'description', now(), 'https://i.ytimg.com/vi/stale/default.jpg', 28)
+					""");
+			// the run got through the first page of the uploads, and the whole of the
+			// channel's only playlist, and then died. only its checkpoints matter here
+			var run = this.writer.startRun(IngestRun.Mode.FULL);
+			var playlistId = stub.playlistIds().getFirst();
+			this.writer.write(new IngestBatch(run),
+					new Checkpoint(YoutubeApiStub.CHANNEL_ID, Checkpoint.UPLOADS, "page-50", 50, false));
+			this.writer.write(new IngestBatch(run),
+					new Checkpoint(YoutubeApiStub.CHANNEL_ID, playlistId, null, 120, true));
+
+			var restarted = writer(DATABASE.dataSource());
+			try (var lock = restarted.tryLock()) {
+				var resumed = restarted.unfinishedRun(lock);
+				assertEquals(run, resumed);
+				new IngestJob(stub.client(4), restarted, this.jdbcTemplate, YoutubeApiStub.CHANNEL_ID).run(resumed);
+				restarted.finishRun(resumed);
+				assertEquals(0, restarted.collectGarbage(resumed), "a resumed run hasn't seen everything");
+			}
+
+			// the second and third pages of the uploads, and nothing else
+			assertEquals(2L, stub.requests().get("playlistItems"));
+			assertEquals(70, this.jdbcTemplate.queryForObject("select count(*) from yt_channel_videos", Integer.class));
+			assertEquals(List.of("video-000050"), this.ids("""
+					select v.video_id from yt_videos v
+					join yt_channel_videos cv on cv.video_id = v.video_id
+					order by v.video_id limit 1
+					"""));
+			assertEquals(List.of("stale"), this.ids("select video_id from yt_videos where video_id = 'stale'"));
+			var uploads = this.jdbcTemplate.queryForMap("""
+					select items_done, completed from ingest_checkpoints
+					where run_id = ? and channel_id = ? and playlist_id = ?
+					""", run.id(), YoutubeApiStub.CHANNEL_ID, Checkpoint.UPLOADS);
+			assertEquals(Map.of("items_done", 120, "completed", true), uploads);
+		}
+	}
+
+	private IngestRun fullRun(Consumer<IngestBatch> videos) {
+		var run = this.writer.startRun(IngestRun.Mode.FULL);
+		var batch = new IngestBatch(run);
+		videos.accept(batch);
+		this.writer.write(batch);
+		this.writer.finishRun(run);
+		return run;
+	}
+
+	/**
+	 * @return the rows a run inserted, updated, and skipped
+	 */
+	private List<Integer> counts(IngestRun run) {
+		return this.jdbcTemplate.queryForObject(
+				"select rows_inserted, rows_updated, rows_skipped from ingest_runs where run_id = ?",
+				(rs, i) -> List.of(rs.getInt(1), rs.getInt(2), rs.getInt(3)), run.id());
+	}
+
+	/**
+	 * @return the transaction that last wrote each of the rows, which changes whenever a
+	 * row is rewritten, even with the same values
+	 */
+	private List<String> versions() {
+		return this.ids("""
+				select xmin::text from yt_videos
+				union all select xmin::text from yt_playlists
+				union all select xmin::text from yt_channels
+				union all select xmin::text from yt_playlist_videos
+				union all select xmin::text from yt_channel_videos
+				""");
+	}
+
+	private List<String> ids(String sql) {
+		return this.jdbcTemplate.queryForList(sql, String.class).stream().sorted().toList();
+	}
+
+	private static IngestWriter writer(DataSource dataSource) {
+		return new IngestWriter(new JdbcTemplate(dataSource),
+				new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+	}
+
+	private static Video video(String videoId, String title) {
+		try {
+			var thumbnail = URI.create("https://i.ytimg.com/vi/" + videoId + "/default.jpg").toURL();
+			return new Video(videoId, title, "description", new Date(0), thumbnail, List.of("spring"), 28, 1_000,
+					100, 0, 10, "channel", false);
+		} //
+		catch (MalformedURLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
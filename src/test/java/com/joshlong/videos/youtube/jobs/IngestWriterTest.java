@@ -0,0 +1,77 @@
+package com.joshlong.videos.youtube.jobs;
+
+import com.joshlong.jdbc.ScratchDatabase;
+import com.joshlong.videos.youtube.client.VideoStatistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks what the {@link IngestWriter} tells the other nodes after an incremental run,
+ * against a scratch database on the local PostgreSQL instance (the one from
+ * {@code docker-compose.yml}).
+ *
+ * @author Josh Long
+ */
+class IngestWriterTest {
+
+	@RegisterExtension
+	static final ScratchDatabase DATABASE = new ScratchDatabase("joshlong_api_ingest_writer_test");
+
+	private static JdbcTemplate jdbcTemplate;
+
+	private static IngestWriter writer;
+
+	@BeforeAll
+	static void insertVideos() {
+		jdbcTemplate = DATABASE.jdbcTemplate();
+		writer = new IngestWriter(jdbcTemplate,
+				new TransactionTemplate(new DataSourceTransactionManager(DATABASE.dataSource())));
+		jdbcTemplate.update("""
+				insert into yt_channels (channel_id, description, published_at, title)
+				values ('channel', 'description', now(), 'title')
+				""");
+		jdbcTemplate.update("""
+				insert into yt_playlists (playlist_id, channel_id, published_at, title, description)
+				values ('playlist', 'channel', now(), 'Spring Tips', 'description')
+				""");
+		for (var id : new String[] { "video-1", "video-2" }) {
+			jdbcTemplate.update("""
+					insert into yt_videos (video_id, title, description, published_at, standard_thumbnail,
+					    category_id)
+					values (?, 'title', 'description', now(), 'https://i.ytimg.com/vi/video/default.jpg', 28)
+					""", id);
+			jdbcTemplate.update("insert into yt_channel_videos (channel_id, video_id) values ('channel', ?)", id);
+		}
+		jdbcTemplate.update("insert into yt_playlist_videos (playlist_id, video_id) values ('playlist', 'video-2')");
+	}
+
+	@Test
+	void aRunThatOnlyRefreshesStatisticsNotifiesTheirChannelsAndPlaylists() {
+		var run = writer.startRun(IngestRun.Mode.INCREMENTAL);
+		var batch = new IngestBatch(run);
+		batch.addStatistics(new VideoStatistics("video-2", 1_000, 100, 0, 10));
+		writer.write(batch);
+		writer.finishRun(run);
+		writer.writeLeaderboards();
+
+		var notification = writer.notifyFinished(run);
+		assertFalse(notification.full());
+		assertEquals(Set.of("channel"), notification.channelIds());
+		assertEquals(Set.of("playlist"), notification.playlistIds());
+		var top = jdbcTemplate.queryForObject("""
+				select video_id from yt_leaderboards
+				where scope = 'PLAYLIST' and scope_id = 'playlist' and metric = 'VIEWS' and position = 0
+				""", String.class);
+		assertEquals("video-2", top);
+	}
+
+}
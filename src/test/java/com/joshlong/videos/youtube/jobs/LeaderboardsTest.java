@@ -0,0 +1,49 @@
+package com.joshlong.videos.youtube.jobs;
+
+import com.joshlong.videos.youtube.LeaderboardMetric;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class LeaderboardsTest {
+
+	private final Instant now = Instant.parse("2024-09-01T00:00:00Z");
+
+	@Test
+	void keepsTheBestOfEachMetric() {
+		var leaderboards = new Leaderboards(this.now);
+		// video-i has i * 10 views and 1000 - i likes, and was published i days ago
+		for (var i = 0; i < 200; i++)
+			leaderboards.offer(Leaderboards.Scope.CHANNEL, "channel", "video-" + i, i * 10, 1000 - i,
+					this.now.minus(Duration.ofDays(i)));
+
+		var results = leaderboards.leaderboards();
+		var views = results.get(new Leaderboards.Key(Leaderboards.Scope.CHANNEL, "channel", LeaderboardMetric.VIEWS));
+		assertEquals(Leaderboards.SIZE, views.size());
+		assertEquals("video-199", views.getFirst().videoId());
+		assertEquals("video-150", views.getLast().videoId());
+
+		var likes = results.get(new Leaderboards.Key(Leaderboards.Scope.CHANNEL, "channel", LeaderboardMetric.LIKES));
+		assertEquals("video-0", likes.getFirst().videoId());
+		assertEquals("video-49", likes.getLast().videoId());
+
+		// only videos with at least 100 views have a rating, and fewer views means a
+		// higher ratio here
+		var rating = results
+				.get(new Leaderboards.Key(Leaderboards.Scope.CHANNEL, "channel", LeaderboardMetric.RATING));
+		assertEquals("video-10", rating.getFirst().videoId());
+
+		// only the last 90 days compete on velocity
+		var velocity = results
+				.get(new Leaderboards.Key(Leaderboards.Scope.CHANNEL, "channel", LeaderboardMetric.VELOCITY));
+		assertEquals(Leaderboards.SIZE, velocity.size());
+		assertFalse(velocity.stream().anyMatch(e -> Integer.parseInt(e.videoId().substring(6)) > 90));
+		for (var i = 1; i < velocity.size(); i++)
+			assertFalse(velocity.get(i).score() > velocity.get(i - 1).score());
+	}
+
+}
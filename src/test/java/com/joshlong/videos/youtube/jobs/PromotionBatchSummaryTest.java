@@ -0,0 +1,86 @@
+package com.joshlong.videos.youtube.jobs;
+
+import com.joshlong.jdbc.ScratchDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the triggers in the Flyway migrations keep
+ * {@code yt_promotion_batch_summaries} in step with
+ * {@code yt_promotion_batches_entries}, against a scratch database on the local
+ * PostgreSQL instance (the one from {@code docker-compose.yml}).
+ *
+ * @author Josh Long
+ */
+class PromotionBatchSummaryTest {
+
+	@RegisterExtension
+	static final ScratchDatabase DATABASE = new ScratchDatabase("joshlong_api_promotion_batch_summary_test");
+
+	private static final String BATCH = "PLspringtips";
+
+	private static final LocalDate FIRST = LocalDate.of(2024, 9, 1);
+
+	private static JdbcTemplate jdbcTemplate;
+
+	@BeforeAll
+	static void insertVideos() {
+		jdbcTemplate = DATABASE.jdbcTemplate();
+		for (var i = 0; i < 5; i++)
+			jdbcTemplate.update("""
+					insert into yt_videos (video_id, title, description, published_at, standard_thumbnail,
+					    category_id, rating)
+					values (?, 'title', 'description', now(), 'https://i.ytimg.com/vi/video/default.jpg', 28, 1)
+					""", "video-" + i);
+	}
+
+	@Test
+	void summariesFollowTheEntries() {
+		for (var i = 0; i < 5; i++)
+			jdbcTemplate.update("""
+					insert into yt_promotion_batches_entries (batch_id, scheduled, video_id) values (?, ?, ?)
+					""", BATCH, day(i), "video-" + i);
+		assertEquals(List.of(day(0), day(4), 0, 5), summary());
+
+		jdbcTemplate.update("""
+				update yt_promotion_batches_entries set promoted = scheduled where batch_id = ? and scheduled < ?
+				""", BATCH, day(2));
+		assertEquals(List.of(day(0), day(4), 2, 5), summary());
+
+		jdbcTemplate.update("""
+				update yt_promotion_batches_entries set scheduled = ? where batch_id = ? and video_id = ?
+				""", day(9), BATCH, "video-4");
+		assertEquals(List.of(day(0), day(9), 2, 5), summary());
+
+		jdbcTemplate.update("delete from yt_promotion_batches_entries where batch_id = ? and promoted is not null",
+				BATCH);
+		assertEquals(List.of(day(2), day(9), 0, 3), summary());
+		assertEquals(0.0, jdbcTemplate.queryForObject(
+				"select percent_promoted from yt_promotion_batches where batch_id = ?", Double.class, BATCH), 0.001);
+
+		jdbcTemplate.update("delete from yt_promotion_batches_entries where batch_id = ?", BATCH);
+		assertTrue(jdbcTemplate.queryForList("select * from yt_promotion_batch_summaries").isEmpty());
+	}
+
+	private static List<Object> summary() {
+		return jdbcTemplate.queryForObject(
+				"select start_date, stop_date, promoted, total from yt_promotion_batch_summaries where batch_id = ?",
+				(rs, rowNum) -> List.of(rs.getTimestamp("start_date"), rs.getTimestamp("stop_date"),
+						rs.getInt("promoted"), rs.getInt("total")),
+				BATCH);
+	}
+
+	private static Timestamp day(int day) {
+		return Timestamp.valueOf(FIRST.plusDays(day).atStartOfDay());
+	}
+
+}